@@ -1,5 +1,6 @@
 package me.schawe.multijsnake.gamemanagement;
 
+import me.schawe.multijsnake.gamemanagement.loop.TickStats;
 import me.schawe.multijsnake.gamemanagement.player.PlayerId;
 import me.schawe.multijsnake.snake.Move;
 import me.schawe.multijsnake.snake.ai.AutopilotDescription;
@@ -25,6 +26,11 @@ public class GameController {
         return ResponseEntity.ok("");
     }
 
+    @GetMapping("/api/tickStats/{id}")
+    public ResponseEntity<TickStats> tickStats(@PathVariable String id) {
+        return ResponseEntity.of(map.tickStats(id));
+    }
+
     @GetMapping("/api/listAi")
     public List<AutopilotDescription> listAi() {
         return map.listAi();
@@ -64,6 +70,12 @@ public class GameController {
         map.move(playerId, move);
     }
 
+    @MessageMapping("/setTickPeriod/{playerIdString}")
+    public void setTickPeriod(@DestinationVariable String playerIdString, long periodMS) {
+        PlayerId playerId = new PlayerId(playerIdString);
+        map.setTickPeriod(playerId, periodMS);
+    }
+
     @MessageMapping("/setName/{playerIdString}")
     public void setName(@DestinationVariable String playerIdString, String name) {
         PlayerId playerId = new PlayerId(playerIdString);
@@ -1,23 +1,30 @@
 package me.schawe.multijsnake.gamemanagement;
 
 import me.schawe.multijsnake.gamemanagement.exceptions.InvalidMapException;
+import me.schawe.multijsnake.gamemanagement.loop.GameLoop;
+import me.schawe.multijsnake.gamemanagement.loop.OverrunPolicy;
+import me.schawe.multijsnake.gamemanagement.loop.TickStats;
 import me.schawe.multijsnake.gamemanagement.player.PlayerId;
 import me.schawe.multijsnake.gamemanagement.player.PlayerInfo;
 import me.schawe.multijsnake.gamemanagement.websocket.WebSocketService;
 import me.schawe.multijsnake.snake.*;
 import me.schawe.multijsnake.snake.ai.*;
 import me.schawe.multijsnake.util.IdGenerator;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
-import org.springframework.scheduling.annotation.EnableScheduling;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Service
-@EnableScheduling
 public class GameService {
+    // bounds for the speed of a game chosen by the players
+    public static final long MIN_TICK_PERIOD_MS = 20;
+    public static final long MAX_TICK_PERIOD_MS = GameLoop.SLOWEST_PERIOD_MS;
+
     private final WebSocketService webSocketService;
     private final ApplicationEventPublisher applicationEventPublisher;
 
@@ -28,6 +35,13 @@ public class GameService {
 
     private final Random random;
 
+    private GameLoop.Mode loopMode = GameLoop.Mode.POOLED;
+    private OverrunPolicy overrunPolicy = OverrunPolicy.SKIP_FRAMES;
+    private int loopWorkers = 0;
+    private long tickPeriodMS = 300;
+    // only runs inside the application, tests tick the games explicitly by `periodicUpdate`
+    private volatile GameLoop gameLoop;
+
     public GameService(WebSocketService webSocketService, ApplicationEventPublisher applicationEventPublisher) {
         this.webSocketService = webSocketService;
         this.applicationEventPublisher = applicationEventPublisher;
@@ -37,7 +51,36 @@ public class GameService {
         random = new Random();
     }
 
+    @Value("${me.schawe.loop.mode:POOLED}")
+    void setLoopMode(GameLoop.Mode loopMode) {
+        this.loopMode = loopMode;
+    }
+
+    @Value("${me.schawe.loop.overrunPolicy:SKIP_FRAMES}")
+    void setOverrunPolicy(OverrunPolicy overrunPolicy) {
+        this.overrunPolicy = overrunPolicy;
+    }
+
+    @Value("${me.schawe.loop.workers:0}")
+    void setLoopWorkers(int loopWorkers) {
+        this.loopWorkers = loopWorkers;
+    }
+
+    @Value("${me.schawe.loop.tickPeriodMS:300}")
+    void setTickPeriodMS(long tickPeriodMS) {
+        this.tickPeriodMS = tickPeriodMS;
+    }
+
+    @Value("${me.schawe.collisions.parallelThreshold:" + Collisions.DEFAULT_PARALLEL_THRESHOLD + "}")
+    void setParallelThreshold(int parallelThreshold) {
+        Collisions.setParallelThreshold(parallelThreshold);
+    }
+
     private GameState newGame(int width, int height, String id) {
+        // sites are packed into two signed 16 bit components, see `Coordinate.pack`
+        if(width <= 0 || height <= 0 || width > Short.MAX_VALUE || height > Short.MAX_VALUE) {
+            throw new InvalidMapException("The size " + width + "x" + height + " is out of range!");
+        }
         GameState gameState = new GameState(width, height, id);
         return initGameState(gameState);
     }
@@ -53,32 +96,63 @@ public class GameService {
         }
         gameStateMap.put(gameId, gameState);
 
+        GameLoop loop = gameLoop;
+        if(loop != null) {
+            loop.add(gameState);
+        }
+
         return gameState;
     }
 
-    @Scheduled(fixedRate = 300)
+    // every game ticks on its own on the workers of the game loop, such that a slow game does not delay the others
+    @PostConstruct
+    public void startGameLoop() {
+        GameLoop loop = GameLoop.create(loopMode, loopWorkers, tickPeriodMS, this::tick);
+        loop.setOverrunPolicy(overrunPolicy);
+        loop.start();
+        gameLoop = loop;
+        for(GameState gameState : gameStateMap.values()) {
+            loop.add(gameState);
+        }
+    }
+
+    @PreDestroy
+    public void stopGameLoop() {
+        GameLoop loop = gameLoop;
+        gameLoop = null;
+        if(loop != null) {
+            loop.stop();
+        }
+    }
+
+    // ticks all games at once on the calling thread
     public void periodicUpdate() {
-        ArrayList<String> abandoned = new ArrayList<>();
-
-        for (String id : allIds()) {
-            GameState gameState = gameStateMap.get(id);
-            if(gameState.isAbandoned()) {
-                // can we remove the keys here directly? do we iterate over a copy of the key set?
-                // better be safe and remove them after the iteration, in case it is
-                // a reference, like apparently everything in Java
-                abandoned.add(id);
-                continue;
-            }
-            if(!gameState.isPaused() && !gameState.isGameOver()) {
-                gameState.update();
+        // the map is concurrent, so abandoned games can be removed during the iteration
+        for(GameState gameState : gameStateMap.values()) {
+            tick(gameState, true);
+        }
+    }
+
+    // one tick of a single game, called by the game loop on one of its workers
+    // ticks which catch up after an overrun are not published, see `OverrunPolicy`
+    private void tick(GameState gameState, boolean publish) {
+        if(gameState.isAbandoned()) {
+            close(gameState.getId());
+            return;
+        }
+        // a paused game still ticks to apply pending commands, e.g. the `Command.Pause` which unpauses it
+        if((!gameState.isPaused() && !gameState.isGameOver()) || gameState.hasPendingCommands()) {
+            gameState.update();
+            if(publish) {
                 webSocketService.update(gameState);
             }
         }
+    }
 
-        // now delete the abandoned instances
-        for(String id : abandoned) {
-            gameStateMap.remove(id);
-        }
+    // how well the game keeps its tick rate, empty if the game loop does not run it
+    public Optional<TickStats> tickStats(String id) {
+        GameLoop loop = gameLoop;
+        return loop == null ? Optional.empty() : loop.getStats(id);
     }
 
     // TODO: this event should be thrown by `GameState`, but it is currently not part of the DI mechanism
@@ -100,6 +174,10 @@ public class GameService {
 
     public void close(String id) {
         gameStateMap.remove(id);
+        GameLoop loop = gameLoop;
+        if(loop != null) {
+            loop.remove(id);
+        }
     }
 
     private void registerPlayer(PlayerId playerId, PlayerInfo playerInfo) {
@@ -118,25 +196,20 @@ public class GameService {
         return gameStateMap.keySet();
     }
 
+    // pausing is applied and broadcast by the next tick, which runs for paused games, too, if commands are pending
     public void pause(PlayerId playerId) {
         SnakeId snakeId = playerToSnake(playerId);
-        GameState state = idToGame(snakeId.getId());
-        state.setPause(true);
-        webSocketService.update(state);
+        idToGame(snakeId.getId()).submit(new Command.Pause(true));
     }
 
     public void unpause(PlayerId playerId) {
         SnakeId snakeId = playerToSnake(playerId);
-        GameState state = idToGame(snakeId.getId());
-        state.setPause(false);
-        webSocketService.update(state);
+        idToGame(snakeId.getId()).submit(new Command.Pause(false));
     }
 
     public void reset(PlayerId playerId) {
         SnakeId snakeId = playerToSnake(playerId);
-        GameState state = idToGame(snakeId.getId());
-        state.reset();
-        webSocketService.update(state);
+        idToGame(snakeId.getId()).submit(new Command.Reset());
     }
 
     public PlayerId joinNewGame(String sessionId, String id, int width, int height) {
@@ -166,28 +239,33 @@ public class GameService {
         return playerId;
     }
 
+    // the turn is applied at the start of the next tick, such that inputs never wait for a running tick
     public void move(PlayerId playerId, Move move) {
         SnakeId snakeId = playerToSnake(playerId);
-        idToGame(snakeId.getId()).turn(snakeId, move);
+        idToGame(snakeId.getId()).submit(new Command.Turn(snakeId, move));
     }
 
-    public void setName(PlayerId playerId, String name) {
+    // e.g. fast arcade rooms or slow rooms for spectators, takes effect after the next tick
+    public void setTickPeriod(PlayerId playerId, long periodMS) {
         SnakeId snakeId = playerToSnake(playerId);
-        GameState state = idToGame(snakeId.getId());
-        state.changeName(snakeId, name);
+        GameLoop loop = gameLoop;
+        if(loop != null) {
+            loop.setPeriod(snakeId.getId(), Math.max(MIN_TICK_PERIOD_MS, Math.min(MAX_TICK_PERIOD_MS, periodMS)));
+        }
+    }
 
-        webSocketService.update(state);
+    // like the turn, the new name is applied and broadcast by the next tick
+    public void setName(PlayerId playerId, String name) {
+        SnakeId snakeId = playerToSnake(playerId);
+        idToGame(snakeId.getId()).submit(new Command.Rename(snakeId, name));
     }
 
     public void addAI(PlayerId playerId, String key) {
         SnakeId snakeId = playerToSnake(playerId);
-        GameState state = idToGame(snakeId.getId());
-
+        // building the autopilot may load a model, so do it here and not in the tick
         Autopilot autopilot = new AutopilotFactory().build(key);
 
-        state.addAISnake(autopilot);
-
-        webSocketService.update(state);
+        idToGame(snakeId.getId()).submit(new Command.AddAutopilot(autopilot));
     }
 
     public static Map<String, AutopilotDescription> aiDescriptions() {
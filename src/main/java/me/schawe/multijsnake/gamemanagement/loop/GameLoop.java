@@ -0,0 +1,241 @@
+package me.schawe.multijsnake.gamemanagement.loop;
+
+import me.schawe.multijsnake.snake.Command;
+import me.schawe.multijsnake.snake.GameState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/// ticks every registered game independently of all other games, each with its own period, see `ScheduledGame`
+/// the ticks of one game never overlap, how the ticks are executed is up to the implementation, see `Mode`
+///
+/// every tick is measured against the period of its game, the `OverrunPolicy` of the game decides what happens if it
+/// takes longer, the numbers are kept per game, see `getStats`, such that a heavy game can be identified
+public abstract class GameLoop {
+    private static final Logger logger = LoggerFactory.getLogger(GameLoop.class);
+    public static final int MAX_MERGED_TICKS = 4;
+    public static final long SLOWEST_PERIOD_MS = 10000;
+    // log only every n-th overrun of a game
+    private static final long LOG_EVERY_OVERRUNS = 100;
+
+    public enum Mode {
+        /// a timing wheel hands the due games to a fixed pool of workers, see `PooledGameLoop`
+        POOLED,
+        /// every game sleeps and ticks on its own (virtual, if available) thread, see `ThreadPerGameLoop`
+        THREAD_PER_GAME,
+        /// the games are hashed by id onto single threaded shards, which own them, see `ShardedGameLoop`
+        SHARDED
+    }
+
+    private final long periodMS;
+    private final TickHandler tick;
+    private final Map<String, ScheduledGame> games = new ConcurrentHashMap<>();
+    private volatile boolean running = false;
+    private volatile OverrunPolicy policy = OverrunPolicy.SKIP_FRAMES;
+
+    // `tick` is called once per period for every game
+    protected GameLoop(long periodMS, TickHandler tick) {
+        this.periodMS = periodMS;
+        this.tick = tick;
+    }
+
+    // `workers <= 0` uses one worker per core, it is ignored by loops without a pool
+    public static GameLoop create(Mode mode, int workers, long periodMS, TickHandler tick) {
+        return switch (mode) {
+            case POOLED -> new PooledGameLoop(workers, periodMS, tick);
+            case THREAD_PER_GAME -> new ThreadPerGameLoop(periodMS, tick);
+            case SHARDED -> new ShardedGameLoop(workers, periodMS, tick);
+        };
+    }
+
+    public long getPeriodMS() {
+        return periodMS;
+    }
+
+    public OverrunPolicy getOverrunPolicy() {
+        return policy;
+    }
+
+    // policy for games which are added from now on
+    public void setOverrunPolicy(OverrunPolicy policy) {
+        this.policy = policy;
+    }
+
+    public void setOverrunPolicy(String id, OverrunPolicy policy) {
+        ScheduledGame game = games.get(id);
+        if (game != null) {
+            game.setPolicy(policy);
+        }
+    }
+
+    public Optional<TickStats> getStats(String id) {
+        return Optional.ofNullable(games.get(id)).map(ScheduledGame::stats);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        startExecution();
+    }
+
+    // cancels all games, ticks which are currently running are interrupted
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        for (ScheduledGame game : games.values()) {
+            cancel(game);
+        }
+        games.clear();
+        stopExecution();
+    }
+
+    public void add(GameState gameState) {
+        add(gameState, periodMS);
+    }
+
+    // the first tick is one period from now
+    public void add(GameState gameState, long periodMS) {
+        if (!running) {
+            throw new IllegalStateException("the game loop is not running");
+        }
+        long period = TimeUnit.MILLISECONDS.toNanos(periodMS);
+        ScheduledGame game = new ScheduledGame(gameState, period, System.nanoTime() + period, policy);
+        if (games.putIfAbsent(gameState.getId(), game) == null) {
+            schedule(game);
+        }
+    }
+
+    // takes effect after the next tick of the game
+    public void setPeriod(String id, long periodMS) {
+        ScheduledGame game = games.get(id);
+        if (game != null) {
+            game.setPeriodNanos(TimeUnit.MILLISECONDS.toNanos(periodMS));
+        }
+    }
+
+    // period of the game in milliseconds, or -1 if it is not registered
+    public long getPeriod(String id) {
+        ScheduledGame game = games.get(id);
+        return game == null ? -1 : TimeUnit.NANOSECONDS.toMillis(game.getPeriodNanos());
+    }
+
+    // can be called from within a tick, e.g., to drop an abandoned game
+    public void remove(String id) {
+        ScheduledGame game = games.remove(id);
+        if (game != null) {
+            cancel(game);
+            removed(game);
+        }
+    }
+
+    protected Optional<ScheduledGame> scheduled(String id) {
+        return Optional.ofNullable(games.get(id));
+    }
+
+    public boolean contains(String id) {
+        return games.containsKey(id);
+    }
+
+    public int size() {
+        return games.size();
+    }
+
+    protected abstract void startExecution();
+
+    protected abstract void stopExecution();
+
+    // execute the ticks of a new game, the first one at its deadline
+    protected abstract void schedule(ScheduledGame game);
+
+    // the game is cancelled and will not tick anymore, e.g., to forget bookkeeping which a waiting game does not reach
+    protected void removed(ScheduledGame game) {
+    }
+
+    // a thread sleeping until the next deadline of the game notices the cancellation immediately
+    private static void cancel(ScheduledGame game) {
+        game.cancel();
+        Thread thread = game.thread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    // one run of a game at its deadline: the tick itself, the bookkeeping and the policy, and the next deadline
+    protected void runTick(ScheduledGame game) {
+        GameState gameState = game.getGameState();
+        OverrunPolicy overrunPolicy = game.getPolicy();
+        long start = System.nanoTime();
+
+        long merged = 0;
+        if (overrunPolicy == OverrunPolicy.MERGE_BROADCASTS) {
+            merged = Math.min(MAX_MERGED_TICKS, game.missedTicks(start));
+            for (long i = 0; i < merged; ++i) {
+                tickSafely(gameState, false);
+            }
+            game.catchUp(merged);
+        }
+        tickSafely(gameState, true);
+
+        long end = System.nanoTime();
+        long period = game.getPeriodNanos();
+        boolean overrun = end - start > period;
+        if (overrun) {
+            handleOverrun(game, overrunPolicy, end - start);
+        }
+        // the next tick and the ones it merges stay due
+        long backlog = overrunPolicy == OverrunPolicy.MERGE_BROADCASTS ? MAX_MERGED_TICKS + 1 : 0;
+        long skipped = game.advanceDeadline(end, backlog);
+        game.record(end - start, overrun, skipped, merged);
+    }
+
+    private void handleOverrun(ScheduledGame game, OverrunPolicy overrunPolicy, long nanos) {
+        String id = game.getGameState().getId();
+        if (game.overruns() % LOG_EVERY_OVERRUNS == 0) {
+            logger.warn("tick of game {} took {} ms, longer than its period of {} ms, {}", id,
+                    TimeUnit.NANOSECONDS.toMillis(nanos), TimeUnit.NANOSECONDS.toMillis(game.getPeriodNanos()), overrunPolicy);
+        }
+        switch (overrunPolicy) {
+            // on every overrun, since expensive snakes might have joined since the last one
+            case DEGRADE_AUTOPILOTS -> game.getGameState().submit(new Command.DegradeAutopilots());
+            case SLOW_DOWN -> game.setPeriodNanos(
+                    Math.min(2 * game.getPeriodNanos(), TimeUnit.MILLISECONDS.toNanos(SLOWEST_PERIOD_MS))
+            );
+            default -> {
+                // skipping happens for all policies
+            }
+        }
+    }
+
+    // an exception must not stop the game
+    private void tickSafely(GameState gameState, boolean publish) {
+        try {
+            tick.tick(gameState, publish);
+        } catch (RuntimeException e) {
+            logger.error("tick of game {} failed", gameState.getId(), e);
+        }
+    }
+
+    static ThreadFactory platformThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
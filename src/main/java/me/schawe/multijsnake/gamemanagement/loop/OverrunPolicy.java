@@ -0,0 +1,15 @@
+package me.schawe.multijsnake.gamemanagement.loop;
+
+/// what the `GameLoop` does if a tick of a game takes longer than its period, ticks which were missed completely
+/// are always skipped instead of run in a burst, such that an overrunning game cannot monopolize a worker
+public enum OverrunPolicy {
+    /// only skip the missed ticks, the game runs slower for a moment
+    SKIP_FRAMES,
+    /// simulate up to `GameLoop.MAX_MERGED_TICKS` missed ticks without publishing them, followed by one update for
+    /// the clients, such that the game keeps its speed if the broadcasts are the expensive part
+    MERGE_BROADCASTS,
+    /// replace expensive autopilots, e.g., neural networks, by cheap heuristics, see `Autopilot.degraded`
+    DEGRADE_AUTOPILOTS,
+    /// double the period of the game, up to `GameLoop.SLOWEST_PERIOD_MS`
+    SLOW_DOWN
+}
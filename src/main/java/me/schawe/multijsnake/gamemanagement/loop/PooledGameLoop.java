@@ -0,0 +1,90 @@
+package me.schawe.multijsnake.gamemanagement.loop;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/// a single timer thread keeps the deadlines of all games in a `TimingWheel` and hands the games which are due to a
+/// fixed pool of workers, so a slow game only delays itself and the games are spread over all workers
+/// a game is only scheduled again after its tick finished, so the ticks of one game never overlap
+public class PooledGameLoop extends GameLoop {
+    public static final long DEFAULT_RESOLUTION_MS = 1;
+    private static final int BUCKETS = 1024;
+
+    private final int workers;
+    private final long resolutionNanos;
+    // games which are new or finished their tick, only the timer thread puts them into the wheel
+    private final Queue<ScheduledGame> pending = new ConcurrentLinkedQueue<>();
+    private ExecutorService executor;
+    private Thread timer;
+
+    // `workers <= 0` uses one worker per core
+    public PooledGameLoop(int workers, long periodMS, TickHandler tick) {
+        this(workers, periodMS, DEFAULT_RESOLUTION_MS, tick);
+    }
+
+    // the deadlines are met with an accuracy of `resolutionMS`
+    public PooledGameLoop(int workers, long periodMS, long resolutionMS, TickHandler tick) {
+        super(periodMS, tick);
+        this.workers = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        this.resolutionNanos = TimeUnit.MILLISECONDS.toNanos(resolutionMS);
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    @Override
+    protected void startExecution() {
+        executor = Executors.newFixedThreadPool(workers, platformThreads("game-loop-"));
+        TimingWheel wheel = new TimingWheel(System.nanoTime(), resolutionNanos, BUCKETS);
+        timer = platformThreads("game-loop-timer-").newThread(() -> runTimer(wheel));
+        timer.start();
+    }
+
+    @Override
+    protected void stopExecution() {
+        LockSupport.unpark(timer);
+        executor.shutdownNow();
+        pending.clear();
+    }
+
+    @Override
+    protected void schedule(ScheduledGame game) {
+        pending.add(game);
+    }
+
+    private void runTimer(TimingWheel wheel) {
+        while (isRunning()) {
+            ScheduledGame game;
+            while ((game = pending.poll()) != null) {
+                wheel.schedule(game);
+            }
+            wheel.advance(System.nanoTime(), this::dispatch);
+            // sleep until the current slot of the wheel ended, `stop` wakes us up
+            LockSupport.parkNanos(this, wheel.nextSlotEnd() - System.nanoTime());
+        }
+    }
+
+    private void dispatch(ScheduledGame game) {
+        try {
+            executor.execute(() -> run(game));
+        } catch (RejectedExecutionException e) {
+            // the loop was stopped in the meantime
+        }
+    }
+
+    private void run(ScheduledGame game) {
+        if (game.isCancelled()) {
+            return;
+        }
+        runTick(game);
+        if (!game.isCancelled()) {
+            pending.add(game);
+        }
+    }
+}
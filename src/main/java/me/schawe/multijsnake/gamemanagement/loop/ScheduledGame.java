@@ -0,0 +1,133 @@
+package me.schawe.multijsnake.gamemanagement.loop;
+
+import me.schawe.multijsnake.snake.GameState;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/// a game registered at the `GameLoop` with its own period and the deadline of its next tick
+/// the deadlines are absolute (in `System.nanoTime`) and advance by the period, not from the end of the last tick,
+/// such that the speed of a game does not drift if its ticks start late or take a varying time
+public class ScheduledGame {
+    private final GameState gameState;
+    private volatile long periodNanos;
+    private volatile boolean cancelled = false;
+    private volatile OverrunPolicy policy;
+
+    // statistics, see `stats`, atomic since a rebalanced game is briefly recorded by two threads
+    private final AtomicLong ticks = new AtomicLong();
+    private final AtomicLong overruns = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong merged = new AtomicLong();
+    private volatile long lastNanos = 0;
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+
+    // only touched by the thread currently responsible for the game, i.e., the timer, the worker or its own thread
+    long deadline;
+    // intrusive list of the bucket of the wheel
+    ScheduledGame next;
+    // the thread of the game, if it has one of its own, see `ThreadPerGameLoop`
+    volatile Thread thread;
+    // the shard owning the game and the shard it should move to, see `ShardedGameLoop`
+    volatile int shard = -1;
+    volatile int targetShard = -1;
+
+    ScheduledGame(GameState gameState, long periodNanos, long deadline) {
+        this(gameState, periodNanos, deadline, OverrunPolicy.SKIP_FRAMES);
+    }
+
+    ScheduledGame(GameState gameState, long periodNanos, long deadline, OverrunPolicy policy) {
+        this.gameState = gameState;
+        this.periodNanos = periodNanos;
+        this.deadline = deadline;
+        this.policy = policy;
+    }
+
+    public GameState getGameState() {
+        return gameState;
+    }
+
+    public long getPeriodNanos() {
+        return periodNanos;
+    }
+
+    // takes effect with the next deadline
+    void setPeriodNanos(long periodNanos) {
+        this.periodNanos = periodNanos;
+    }
+
+    public long getDeadline() {
+        return deadline;
+    }
+
+    public OverrunPolicy getPolicy() {
+        return policy;
+    }
+
+    void setPolicy(OverrunPolicy policy) {
+        this.policy = policy;
+    }
+
+    public TickStats stats() {
+        return new TickStats(periodNanos, ticks.get(), overruns.get(), skipped.get(), merged.get(), lastNanos,
+                maxNanos.get(), totalNanos.get(), policy);
+    }
+
+    // fraction of a thread the game needs, estimated from its last run
+    double load() {
+        return lastNanos / (double) periodNanos;
+    }
+
+    // one call per run of the game, `merged + 1` ticks were simulated in `nanos`
+    void record(long nanos, boolean overrun, long skippedTicks, long mergedTicks) {
+        ticks.addAndGet(1 + mergedTicks);
+        lastNanos = nanos;
+        maxNanos.accumulateAndGet(nanos, Math::max);
+        totalNanos.addAndGet(nanos);
+        skipped.addAndGet(skippedTicks);
+        merged.addAndGet(mergedTicks);
+        if (overrun) {
+            overruns.incrementAndGet();
+        }
+    }
+
+    long overruns() {
+        return overruns.get();
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    // the deadline after the tick which was due at `deadline`, ticks which are already too late at `now` are skipped
+    // returns the number of skipped ticks
+    long advanceDeadline(long now) {
+        return advanceDeadline(now, 0);
+    }
+
+    // same, but up to `backlog` missed deadlines stay due, such that the next run can catch up with them
+    long advanceDeadline(long now, long backlog) {
+        long period = periodNanos;
+        deadline += period;
+        if (deadline > now) {
+            return 0;
+        }
+        long missed = Math.max(0, (now - deadline) / period + 1 - backlog);
+        deadline += missed * period;
+        return missed;
+    }
+
+    // number of ticks, besides the current one, whose deadlines passed until `now`
+    long missedTicks(long now) {
+        return now - deadline < periodNanos ? 0 : (now - deadline) / periodNanos;
+    }
+
+    // these ticks were run, such that they are not skipped
+    void catchUp(long ticks) {
+        deadline += ticks * periodNanos;
+    }
+}
@@ -0,0 +1,231 @@
+package me.schawe.multijsnake.gamemanagement.loop;
+
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/// the games are hashed by their id onto a fixed number of shards, every shard is a single thread with its own
+/// `TimingWheel`, which owns its games exclusively: their queued commands, ticks, snapshots and broadcasts always run
+/// on the same thread, so the data of a game stays in the caches of one core and its lock is never contended by other
+/// ticks; only joining players add their snake directly, since they need its id immediately, so games keep their lock
+///
+/// a game blocking its shard delays all games of this shard, so a balancer measures the load of the shards and moves
+/// games from the hottest to the coolest shard, a game changes its owner only between two of its ticks
+public class ShardedGameLoop extends GameLoop {
+    public static final long DEFAULT_REBALANCE_MS = 1000;
+    private static final int BUCKETS = 1024;
+    private static final long RESOLUTION_NANOS = TimeUnit.MILLISECONDS.toNanos(PooledGameLoop.DEFAULT_RESOLUTION_MS);
+    // fraction of a thread by which the hottest shard must exceed the coolest one to move a game
+    private static final double IMBALANCE = 0.2;
+
+    private final Shard[] shards;
+    private final long rebalanceNanos;
+    private Thread balancer;
+
+    // `shards <= 0` uses one shard per core
+    public ShardedGameLoop(int shards, long periodMS, TickHandler tick) {
+        this(shards, periodMS, DEFAULT_REBALANCE_MS, tick);
+    }
+
+    // `rebalanceMS <= 0` disables the automatic rebalancing, see `rebalance`
+    public ShardedGameLoop(int shards, long periodMS, long rebalanceMS, TickHandler tick) {
+        super(periodMS, tick);
+        int n = shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+        this.shards = new Shard[n];
+        for (int i = 0; i < n; ++i) {
+            this.shards[i] = new Shard(i);
+        }
+        this.rebalanceNanos = TimeUnit.MILLISECONDS.toNanos(rebalanceMS);
+    }
+
+    public int getShards() {
+        return shards.length;
+    }
+
+    // shard a game is placed on initially
+    static int shardFor(String id, int shards) {
+        int h = id.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), shards);
+    }
+
+    // shard currently owning the game, or -1 if it is not registered
+    public int shardOf(String id) {
+        return scheduled(id).map(game -> game.shard).orElse(-1);
+    }
+
+    // number of games the shard is responsible for
+    int ownedGames(int shard) {
+        return shards[shard].owned.size();
+    }
+
+    // fraction of the last measuring interval the shard was busy with ticks
+    public double utilization(int shard) {
+        return shards[shard].utilization;
+    }
+
+    @Override
+    protected void startExecution() {
+        for (Shard shard : shards) {
+            shard.start();
+        }
+        if (rebalanceNanos > 0) {
+            balancer = platformThreads("game-shard-balancer-").newThread(this::runBalancer);
+            balancer.start();
+        }
+    }
+
+    @Override
+    protected void stopExecution() {
+        for (Shard shard : shards) {
+            shard.stop();
+        }
+        if (balancer != null) {
+            LockSupport.unpark(balancer);
+            balancer = null;
+        }
+    }
+
+    @Override
+    protected void schedule(ScheduledGame game) {
+        shards[shardFor(game.getGameState().getId(), shards.length)].adopt(game);
+    }
+
+    // a closed game waiting in the wheel is only dropped by the wheel, which does not tell its shard
+    @Override
+    protected void removed(ScheduledGame game) {
+        int shard = game.shard;
+        if (shard >= 0) {
+            shards[shard].owned.remove(game);
+        }
+    }
+
+    private void runBalancer() {
+        while (isRunning()) {
+            LockSupport.parkNanos(this, rebalanceNanos);
+            rebalance();
+        }
+    }
+
+    /// measures the utilization of every shard since the last call and moves at most one game from the hottest to
+    /// the coolest shard, if their utilizations differ by more than `IMBALANCE`
+    /// the moved game is the one whose load is closest to half of the difference, which balances the two shards best,
+    /// returns whether a game is moved, which happens after its next tick
+    public synchronized boolean rebalance() {
+        Shard hottest = shards[0];
+        Shard coolest = shards[0];
+        for (Shard shard : shards) {
+            shard.measure();
+            if (shard.utilization > hottest.utilization) {
+                hottest = shard;
+            }
+            if (shard.utilization < coolest.utilization) {
+                coolest = shard;
+            }
+        }
+        double gap = hottest.utilization - coolest.utilization;
+        if (gap <= IMBALANCE || hottest.owned.size() < 2) {
+            return false;
+        }
+
+        ScheduledGame candidate = null;
+        double best = gap;
+        for (ScheduledGame game : hottest.owned) {
+            // the difference after moving the game
+            double remaining = Math.abs(gap - 2 * game.load());
+            if (game.targetShard < 0 && !game.isCancelled() && remaining < best) {
+                candidate = game;
+                best = remaining;
+            }
+        }
+        if (candidate == null) {
+            return false;
+        }
+        candidate.targetShard = coolest.index;
+        return true;
+    }
+
+    private class Shard {
+        private final int index;
+        // games which are new, moved here or finished their tick, only the thread of the shard puts them into the wheel
+        private final Queue<ScheduledGame> pending = new ConcurrentLinkedQueue<>();
+        private final Set<ScheduledGame> owned = ConcurrentHashMap.newKeySet();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private long measuredBusy = 0;
+        private long measuredAt = System.nanoTime();
+        private volatile double utilization = 0;
+        private Thread thread;
+
+        Shard(int index) {
+            this.index = index;
+        }
+
+        void start() {
+            TimingWheel wheel = new TimingWheel(System.nanoTime(), RESOLUTION_NANOS, BUCKETS);
+            thread = platformThreads("game-shard-" + index + "-").newThread(() -> run(wheel));
+            thread.start();
+        }
+
+        void stop() {
+            LockSupport.unpark(thread);
+            pending.clear();
+            owned.clear();
+        }
+
+        void adopt(ScheduledGame game) {
+            game.shard = index;
+            game.targetShard = -1;
+            owned.add(game);
+            // `removed` might have looked at the previous shard of a moving game
+            if (game.isCancelled()) {
+                owned.remove(game);
+                return;
+            }
+            pending.add(game);
+        }
+
+        void measure() {
+            long now = System.nanoTime();
+            long busy = busyNanos.get();
+            utilization = (busy - measuredBusy) / (double) Math.max(1, now - measuredAt);
+            measuredBusy = busy;
+            measuredAt = now;
+        }
+
+        private void run(TimingWheel wheel) {
+            while (isRunning()) {
+                ScheduledGame game;
+                while ((game = pending.poll()) != null) {
+                    wheel.schedule(game);
+                }
+                wheel.advance(System.nanoTime(), this::tick);
+                LockSupport.parkNanos(this, wheel.nextSlotEnd() - System.nanoTime());
+            }
+        }
+
+        // the game goes back into the wheel via `pending`, such that a deadline in the past does not wait a rotation
+        private void tick(ScheduledGame game) {
+            if (game.isCancelled()) {
+                owned.remove(game);
+                return;
+            }
+            long start = System.nanoTime();
+            runTick(game);
+            busyNanos.addAndGet(System.nanoTime() - start);
+
+            int target = game.targetShard;
+            if (game.isCancelled()) {
+                owned.remove(game);
+            } else if (target >= 0 && target != index) {
+                owned.remove(game);
+                shards[target].adopt(game);
+            } else {
+                game.targetShard = -1;
+                pending.add(game);
+            }
+        }
+    }
+}
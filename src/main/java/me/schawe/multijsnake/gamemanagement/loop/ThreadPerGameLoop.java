@@ -0,0 +1,81 @@
+package me.schawe.multijsnake.gamemanagement.loop;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
+
+/// every game runs its own loop on a thread of its own: sleep until the deadline, tick, repeat
+/// blocking inside a tick, e.g., saving a highscore or a slow model, then only parks this game
+/// on JVMs with virtual threads (Java 21+, found by reflection, such that the build keeps targeting 17) the threads
+/// are virtual and cheap, otherwise they are platform threads, which is only sensible for a moderate number of games
+public class ThreadPerGameLoop extends GameLoop {
+    private final ThreadFactory threads;
+    private final boolean virtual;
+    private final Set<Thread> alive = ConcurrentHashMap.newKeySet();
+
+    public ThreadPerGameLoop(long periodMS, TickHandler tick) {
+        super(periodMS, tick);
+        ThreadFactory virtualThreads = virtualThreads("game-");
+        virtual = virtualThreads != null;
+        threads = virtual ? virtualThreads : platformThreads("game-");
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    @Override
+    protected void startExecution() {
+        // the threads are started per game
+    }
+
+    // all games are cancelled already, this interrupts the ticks which are still running
+    @Override
+    protected void stopExecution() {
+        for (Thread thread : alive) {
+            thread.interrupt();
+        }
+    }
+
+    @Override
+    protected void schedule(ScheduledGame game) {
+        Thread thread = threads.newThread(() -> run(game));
+        game.thread = thread;
+        alive.add(thread);
+        thread.start();
+    }
+
+    private void run(ScheduledGame game) {
+        try {
+            loop(game);
+        } finally {
+            alive.remove(Thread.currentThread());
+        }
+    }
+
+    private void loop(ScheduledGame game) {
+        while (!game.isCancelled()) {
+            long wait = game.getDeadline() - System.nanoTime();
+            if (wait > 0) {
+                // wakes up early if the game is cancelled, or spuriously, which just loops again
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+            runTick(game);
+        }
+    }
+
+    // `Thread.ofVirtual().name(prefix, 0).factory()` on Java 21+, null if virtual threads are not available
+    static ThreadFactory virtualThreads(String prefix) {
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            Object ofVirtual = Thread.class.getMethod("ofVirtual").invoke(null);
+            Object named = builder.getMethod("name", String.class, long.class).invoke(ofVirtual, prefix, 0L);
+            return (ThreadFactory) builder.getMethod("factory").invoke(named);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // e.g. Java 17, or virtual threads as a disabled preview feature
+            return null;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package me.schawe.multijsnake.gamemanagement.loop;
+
+import me.schawe.multijsnake.snake.GameState;
+
+/// one tick of one game, called by the `GameLoop`
+/// `publish` is false for ticks which are only simulated to catch up, see `OverrunPolicy.MERGE_BROADCASTS`
+@FunctionalInterface
+public interface TickHandler {
+    void tick(GameState gameState, boolean publish);
+}
@@ -0,0 +1,20 @@
+package me.schawe.multijsnake.gamemanagement.loop;
+
+/// how well a game keeps its tick rate, all durations in nanoseconds
+/// `overruns` counts ticks which took longer than the period, `skipped` the ticks which were not run at all,
+/// `merged` the ticks which were simulated without publishing them, see `OverrunPolicy`
+public record TickStats(
+        long periodNanos,
+        long ticks,
+        long overruns,
+        long skipped,
+        long merged,
+        long lastNanos,
+        long maxNanos,
+        long totalNanos,
+        OverrunPolicy policy
+) {
+    public double meanNanos() {
+        return ticks == 0 ? 0 : totalNanos / (double) ticks;
+    }
+}
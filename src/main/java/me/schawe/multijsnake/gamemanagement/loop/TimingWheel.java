@@ -0,0 +1,81 @@
+package me.schawe.multijsnake.gamemanagement.loop;
+
+import java.util.function.Consumer;
+
+/// hashed timing wheel: the time is divided into slots of `resolution` nanoseconds, a game waits in the bucket of the
+/// slot of its deadline, modulo the number of buckets, such that scheduling is O(1) regardless of the number of games
+/// deadlines more than one rotation ahead stay in their bucket until the rotation in which they are due
+///
+/// not thread safe, it is driven by a single thread, see `GameLoop`
+public class TimingWheel {
+    private final long start;
+    private final long resolution;
+    private final ScheduledGame[] buckets;
+    private final int mask;
+    private long currentSlot = 0;
+    private int size = 0;
+
+    // `numBuckets` is rounded up to a power of two
+    public TimingWheel(long start, long resolution, int numBuckets) {
+        if (resolution <= 0 || numBuckets <= 0) {
+            throw new IllegalArgumentException("invalid timing wheel: resolution " + resolution + ", buckets " + numBuckets);
+        }
+        this.start = start;
+        this.resolution = resolution;
+        int n = Integer.highestOneBit(Math.max(1, numBuckets - 1)) << 1;
+        buckets = new ScheduledGame[n];
+        mask = n - 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // time at which the slot which is processed next ends, i.e., until which `advance` has nothing to do
+    public long nextSlotEnd() {
+        return start + (currentSlot + 1) * resolution;
+    }
+
+    // deadlines in the past go into the next slot which is processed
+    void schedule(ScheduledGame game) {
+        long slot = Math.max(currentSlot, Math.floorDiv(game.deadline - start, resolution));
+        int bucket = (int) (slot & mask);
+        game.next = buckets[bucket];
+        buckets[bucket] = game;
+        size += 1;
+    }
+
+    // processes all slots which ended until `now` and passes every due game to `expired`, cancelled games are dropped
+    void advance(long now, Consumer<ScheduledGame> expired) {
+        while (nextSlotEnd() <= now) {
+            long slotEnd = nextSlotEnd();
+            int bucket = (int) (currentSlot & mask);
+            ScheduledGame remaining = null;
+            ScheduledGame game = buckets[bucket];
+            buckets[bucket] = null;
+            while (game != null) {
+                ScheduledGame next = game.next;
+                if (game.isCancelled()) {
+                    size -= 1;
+                    game.next = null;
+                } else if (game.deadline < slotEnd) {
+                    size -= 1;
+                    game.next = null;
+                    expired.accept(game);
+                } else {
+                    game.next = remaining;
+                    remaining = game;
+                }
+                game = next;
+            }
+            // `expired` may have scheduled into this bucket in the meantime
+            while (remaining != null) {
+                ScheduledGame next = remaining.next;
+                remaining.next = buckets[bucket];
+                buckets[bucket] = remaining;
+                remaining = next;
+            }
+            currentSlot += 1;
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package me.schawe.multijsnake.gamemanagement.websocket;
 
 import me.schawe.multijsnake.gamemanagement.GameService;
-import me.schawe.multijsnake.snake.GameState;
+import me.schawe.multijsnake.snake.Command;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
@@ -9,20 +9,16 @@ import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 @Component
 public class WebSocketEventListener {
     private final GameService gameService;
-    private final WebSocketService webSocketService;
 
-    public WebSocketEventListener(GameService gameService, WebSocketService webSocketService) {
+    public WebSocketEventListener(GameService gameService) {
         this.gameService = gameService;
-        this.webSocketService = webSocketService;
     }
 
     @EventListener
     public void onDisconnectEvent(SessionDisconnectEvent event) {
         gameService.findPlayerBySession(event.getSessionId()).ifPresent(playerInfo -> {
-            GameState gameState = gameService.idToGame(playerInfo.getGameId());
-            gameState.kill(playerInfo.snakeId());
-            gameState.markForRemoval(playerInfo.snakeId());
-            webSocketService.update(gameState);
+            // the next tick applies and broadcasts the departure
+            gameService.idToGame(playerInfo.getGameId()).submit(new Command.Leave(playerInfo.snakeId()));
         });
     }
 }
\ No newline at end of file
@@ -22,9 +22,10 @@ public class WebSocketService {
         this.repo = repo;
     }
 
+    // sends the snapshot published by the last tick, such that serialization never races with the game loop
     public void update(GameState gameState) {
         this.websocket.convertAndSend(
-                MESSAGE_PREFIX + "/update/" + gameState.getId(), gameState);
+                MESSAGE_PREFIX + "/update/" + gameState.getId(), gameState.snapshot());
     }
 
     public void updateHighscore(int size) {
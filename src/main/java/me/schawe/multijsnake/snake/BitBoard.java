@@ -0,0 +1,81 @@
+package me.schawe.multijsnake.snake;
+
+/// occupancy of fields with up to 64 columns, which additionally keeps one `long` per row
+/// with a bit set for every occupied site, bits beyond the width of the field are walls
+/// such that occupation checks, danger queries and flood fills are a few bitwise operations
+/// the expiry ticks of the `OccupancyGrid` are still needed for `remainingTurns` and to decide when a site is released
+public class BitBoard extends OccupancyGrid {
+    public static final int MAX_WIDTH = Long.SIZE;
+
+    private final long[] rows;
+    // bits of the sites inside of the field
+    private final long fieldMask;
+
+    public BitBoard(int width, int height) {
+        super(width, height);
+        if (width > MAX_WIDTH) {
+            throw new IllegalArgumentException("BitBoard supports at most " + MAX_WIDTH + " columns, not " + width);
+        }
+        rows = new long[height];
+        fieldMask = width == MAX_WIDTH ? -1L : (1L << width) - 1;
+    }
+
+    public BitBoard(BitBoard other) {
+        super(other);
+        rows = other.rows.clone();
+        fieldMask = other.fieldMask;
+    }
+
+    @Override
+    public BitBoard copy() {
+        return new BitBoard(this);
+    }
+
+    @Override
+    public boolean isOccupied(int x, int y) {
+        return contains(x, y) && (rows[y] & (1L << x)) != 0;
+    }
+
+    @Override
+    public boolean isBlocked(int x, int y) {
+        return y < 0 || y >= height() || x < 0 || x >= MAX_WIDTH || ((~rows[y] & fieldMask) & (1L << x)) == 0;
+    }
+
+    @Override
+    public void occupy(int x, int y, int turns) {
+        super.occupy(x, y, turns);
+        if (contains(x, y)) {
+            rows[y] |= 1L << x;
+        }
+    }
+
+    @Override
+    public void release(int x, int y) {
+        super.release(x, y);
+        if (contains(x, y) && !super.isOccupied(x, y)) {
+            rows[y] &= ~(1L << x);
+        }
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        for (int y = 0; y < rows.length; ++y) {
+            rows[y] = 0;
+        }
+    }
+
+    // grows the reachable set of all rows at once, until it does not change anymore, see `FieldKernels`
+    @Override
+    public int reachableFreeSites(int x, int y) {
+        if (!contains(x, y)) {
+            return 0;
+        }
+        return FieldKernels.get().reachableFreeSites(rows, fieldMask, x, y);
+    }
+
+    @Override
+    public void blockedNeighbors(int[] heads, int count, int[] masks) {
+        FieldKernels.get().blockedNeighbors(rows, width(), heads, count, masks);
+    }
+}
@@ -0,0 +1,48 @@
+package me.schawe.multijsnake.snake;
+
+import java.util.Random;
+
+/// mutable occupation of the field, as it is maintained by the `GameState` during the ticks
+/// `forSize` picks the most efficient implementation for the size of the field
+public interface Board extends OccupancyView {
+    // fields with more sites use sparse chunks instead of dense arrays
+    int MAX_DENSE_SITES = 1 << 22;
+
+    static Board forSize(int width, int height) {
+        if ((long) width * height > MAX_DENSE_SITES) {
+            return new ChunkedBoard(width, height);
+        }
+        if (width <= BitBoard.MAX_WIDTH) {
+            return new BitBoard(width, height);
+        }
+        return new OccupancyGrid(width, height);
+    }
+
+    int getTick();
+
+    // independent copy, e.g., to simulate a few ticks ahead
+    Board copy();
+
+    boolean contains(int x, int y);
+
+    // uniformly random packed site which is not occupied
+    int randomFreeSite(Random random);
+
+    // the site will be occupied for the current and the following `turns - 1` ticks
+    // heads outside of the field (i.e., snakes which crashed into a wall) are not recorded
+    void occupy(int x, int y, int turns);
+
+    // a tail end left this site, if no one else occupies it, it is free again
+    void release(int x, int y);
+
+    // a growing snake keeps all its sites occupied for some more turns
+    void extend(int x, int y, int turns);
+
+    // sites of dead snakes stay occupied until the next reset
+    void freeze(int x, int y);
+
+    // advance to the next tick, all tail ends which reached their expiry tick are free afterwards
+    void advance();
+
+    void clear();
+}
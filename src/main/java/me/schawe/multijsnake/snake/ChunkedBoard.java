@@ -0,0 +1,346 @@
+package me.schawe.multijsnake.snake;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/// sparse occupancy for huge fields, which are mostly empty
+/// the field is split into chunks of 64x64 sites, which are only allocated while a snake occupies any of their sites
+/// such that the memory scales with the occupied area and not with the size of the field
+/// every chunk stores the expiry ticks like the `OccupancyGrid` and one `long` per row of occupied bits like the `BitBoard`
+public class ChunkedBoard implements Board {
+    private static final int CHUNK_BITS = 6;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    // failed draws of `randomFreeSite` before it falls back to counting the free sites
+    private static final int MAX_REJECTIONS = 64;
+    // flood fills on huge fields stop counting here
+    public static final int FLOOD_FILL_LIMIT = 1 << 16;
+    private static final Move[] MOVES = Move.values();
+    // scratch space of the flood fill, one per thread, since frozen copies share the board between threads
+    private static final ThreadLocal<VisitedSites> VISITED = ThreadLocal.withInitial(VisitedSites::new);
+
+    private static class Chunk {
+        final int[] expiry;
+        final long[] rows;
+        int occupied;
+
+        Chunk() {
+            expiry = new int[CHUNK_SIZE * CHUNK_SIZE];
+            rows = new long[CHUNK_SIZE];
+            occupied = 0;
+        }
+
+        Chunk(Chunk other) {
+            expiry = other.expiry.clone();
+            rows = other.rows.clone();
+            occupied = other.occupied;
+        }
+    }
+
+    /// the sites visited by a flood fill in the order of their visit, which is also the queue of the breadth first
+    /// search, and an open addressing set of them, like the head table of `Collisions`
+    /// the entries of the set are valid if they carry the stamp of the current fill, so it is cleared in O(1)
+    /// it grows with the largest region of its thread, but does not allocate anything afterwards
+    private static final class VisitedSites {
+        private int[] order = new int[256];
+        private int size = 0;
+        private int[] sites = new int[512];
+        private int[] stamps = new int[512];
+        private int stamp = 1;
+
+        void clear() {
+            size = 0;
+            stamp += 1;
+            if (stamp == 0) {
+                Arrays.fill(stamps, 0);
+                stamp = 1;
+            }
+        }
+
+        // false if the site was visited before
+        boolean visit(int site) {
+            int i = slotOf(site);
+            if (stamps[i] == stamp) {
+                return false;
+            }
+            sites[i] = site;
+            stamps[i] = stamp;
+            if (size == order.length) {
+                order = Arrays.copyOf(order, 2 * size);
+            }
+            order[size++] = site;
+            // at most half full, such that the probe sequences stay short
+            if (2 * size > sites.length) {
+                rehash(2 * sites.length);
+            }
+            return true;
+        }
+
+        private int slotOf(int site) {
+            int mask = sites.length - 1;
+            int i = (site * 0x9E3779B9) >>> 7 & mask;
+            while (stamps[i] == stamp && sites[i] != site) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        private void rehash(int capacity) {
+            sites = new int[capacity];
+            stamps = new int[capacity];
+            stamp = 1;
+            for (int k = 0; k < size; ++k) {
+                int i = slotOf(order[k]);
+                sites[i] = order[k];
+                stamps[i] = stamp;
+            }
+        }
+    }
+
+    private final int width;
+    private final int height;
+    private final int chunksX;
+    private final Chunk[] chunks;
+    private int occupied;
+    private int tick;
+
+    public ChunkedBoard(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.chunksX = (width + CHUNK_MASK) >> CHUNK_BITS;
+        int chunksY = (height + CHUNK_MASK) >> CHUNK_BITS;
+        this.chunks = new Chunk[chunksX * chunksY];
+        this.occupied = 0;
+        this.tick = 0;
+    }
+
+    public ChunkedBoard(ChunkedBoard other) {
+        this.width = other.width;
+        this.height = other.height;
+        this.chunksX = other.chunksX;
+        this.chunks = new Chunk[other.chunks.length];
+        for (int c = 0; c < chunks.length; ++c) {
+            if (other.chunks[c] != null) {
+                chunks[c] = new Chunk(other.chunks[c]);
+            }
+        }
+        this.occupied = other.occupied;
+        this.tick = other.tick;
+    }
+
+    @Override
+    public ChunkedBoard copy() {
+        return new ChunkedBoard(this);
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public int height() {
+        return height;
+    }
+
+    @Override
+    public int getTick() {
+        return tick;
+    }
+
+    // number of chunks which are currently allocated
+    public int allocatedChunks() {
+        int count = 0;
+        for (Chunk chunk : chunks) {
+            if (chunk != null) {
+                count += 1;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public boolean contains(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    private Chunk chunkAt(int x, int y) {
+        return chunks[(y >> CHUNK_BITS) * chunksX + (x >> CHUNK_BITS)];
+    }
+
+    private static int local(int x, int y) {
+        return (y & CHUNK_MASK) * CHUNK_SIZE + (x & CHUNK_MASK);
+    }
+
+    private static boolean isSet(Chunk chunk, int x, int y) {
+        return (chunk.rows[y & CHUNK_MASK] & (1L << (x & CHUNK_MASK))) != 0;
+    }
+
+    @Override
+    public boolean isOccupied(int x, int y) {
+        if (!contains(x, y)) {
+            return false;
+        }
+        Chunk chunk = chunkAt(x, y);
+        return chunk != null && isSet(chunk, x, y);
+    }
+
+    @Override
+    public int remainingTurns(int x, int y) {
+        if (!isOccupied(x, y)) {
+            return 0;
+        }
+        int e = chunkAt(x, y).expiry[local(x, y)];
+        if (e < 0) {
+            return -e;
+        }
+        return Math.max(0, e - tick);
+    }
+
+    @Override
+    public long freeSites() {
+        return (long) width * height - occupied;
+    }
+
+    @Override
+    public void occupy(int x, int y, int turns) {
+        if (!contains(x, y)) {
+            return;
+        }
+        int c = (y >> CHUNK_BITS) * chunksX + (x >> CHUNK_BITS);
+        if (chunks[c] == null) {
+            chunks[c] = new Chunk();
+        }
+        Chunk chunk = chunks[c];
+        int idx = local(x, y);
+        if (!isSet(chunk, x, y)) {
+            // the site might hold the stale expiry of an earlier occupation
+            chunk.expiry[idx] = 0;
+            chunk.rows[y & CHUNK_MASK] |= 1L << (x & CHUNK_MASK);
+            chunk.occupied += 1;
+            occupied += 1;
+        }
+        if (chunk.expiry[idx] >= 0) {
+            chunk.expiry[idx] = Math.max(chunk.expiry[idx], tick + turns);
+        }
+    }
+
+    @Override
+    public void release(int x, int y) {
+        if (!isOccupied(x, y)) {
+            return;
+        }
+        int c = (y >> CHUNK_BITS) * chunksX + (x >> CHUNK_BITS);
+        Chunk chunk = chunks[c];
+        int e = chunk.expiry[local(x, y)];
+        if (e >= 0 && e <= tick) {
+            chunk.rows[y & CHUNK_MASK] &= ~(1L << (x & CHUNK_MASK));
+            chunk.occupied -= 1;
+            occupied -= 1;
+            if (chunk.occupied == 0) {
+                chunks[c] = null;
+            }
+        }
+    }
+
+    @Override
+    public void extend(int x, int y, int turns) {
+        if (!isOccupied(x, y)) {
+            return;
+        }
+        int[] expiry = chunkAt(x, y).expiry;
+        int idx = local(x, y);
+        if (expiry[idx] > tick) {
+            expiry[idx] += turns;
+        }
+    }
+
+    @Override
+    public void freeze(int x, int y) {
+        if (!isOccupied(x, y)) {
+            return;
+        }
+        int[] expiry = chunkAt(x, y).expiry;
+        int idx = local(x, y);
+        if (expiry[idx] > tick) {
+            expiry[idx] = tick - expiry[idx];
+        }
+    }
+
+    @Override
+    public void advance() {
+        tick += 1;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(chunks, null);
+        occupied = 0;
+        tick = 0;
+    }
+
+    // huge fields are mostly empty, so a few random draws almost always suffice
+    @Override
+    public int randomFreeSite(Random random) {
+        for (int i = 0; i < MAX_REJECTIONS; ++i) {
+            int x = random.nextInt(width);
+            int y = random.nextInt(height);
+            if (!isOccupied(x, y)) {
+                return Coordinate.pack(x, y);
+            }
+        }
+        return nthFreeSite(random.nextLong(freeSites()));
+    }
+
+    // walks over the chunks, skipping whole chunks by their number of free sites
+    private int nthFreeSite(long n) {
+        for (int c = 0; c < chunks.length; ++c) {
+            int x0 = (c % chunksX) << CHUNK_BITS;
+            int y0 = (c / chunksX) << CHUNK_BITS;
+            int w = Math.min(CHUNK_SIZE, width - x0);
+            int h = Math.min(CHUNK_SIZE, height - y0);
+            int free = w * h - (chunks[c] == null ? 0 : chunks[c].occupied);
+            if (n >= free) {
+                n -= free;
+                continue;
+            }
+            for (int y = y0; y < y0 + h; ++y) {
+                for (int x = x0; x < x0 + w; ++x) {
+                    if (!isOccupied(x, y) && n-- == 0) {
+                        return Coordinate.pack(x, y);
+                    }
+                }
+            }
+        }
+        throw new IllegalStateException("no free site left");
+    }
+
+    // breadth first search, which only remembers the visited sites, but stops at `FLOOD_FILL_LIMIT` sites
+    // the result is truncated there, so for huge regions it is a lower bound: `FLOOD_FILL_LIMIT` means at least as much
+    @Override
+    public int reachableFreeSites(int x, int y) {
+        if (!contains(x, y)) {
+            return 0;
+        }
+
+        VisitedSites visited = VISITED.get();
+        visited.clear();
+        visited.visit(Coordinate.pack(x, y));
+        int head = 0;
+        int count = 0;
+        while (head < visited.size && count < FLOOD_FILL_LIMIT) {
+            int site = visited.order[head++];
+            // only the start site can be occupied, everything else was checked before it was visited
+            if (!isOccupied(Coordinate.x(site), Coordinate.y(site))) {
+                count += 1;
+            }
+            for (Move move : MOVES) {
+                int next = Coordinate.neighbor(site, move);
+                if (!isBlocked(Coordinate.x(next), Coordinate.y(next))) {
+                    visited.visit(next);
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,267 @@
+package me.schawe.multijsnake.snake;
+
+import me.schawe.multijsnake.snake.ai.Autopilot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/// moves the heads of all living snakes during a tick of the `GameState` and detects which of them collided
+/// the scratch space is indexed like the slots of the `SnakeStore` and reused between ticks, such that the tick does not allocate
+///
+/// the new heads are counted once in a small hash table, then every head is checked independently against the walls,
+/// the bodies on the board and the other heads, so the check is O(number of snakes) and needs no writes
+/// above `parallelThreshold` snakes the check is split over the common fork-join pool (which allocates a few tasks)
+/// the autopilots decide on the state before any head moved, either one after the other on the game itself, or, if
+/// enabled by `GameState.setParallelAutopilots`, concurrently on a frozen copy of the snakes, which gives the same moves
+/// a snake whose autopilot throws dies before the heads move, in both modes, and the tick goes on
+/// the snakes which died are only reported here, the `GameState` kills them in the order of their slots, such that
+/// the death callbacks are deterministic regardless of the number of threads
+public class Collisions {
+    private static final Logger logger = LoggerFactory.getLogger(Collisions.class);
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1024;
+    // snakes checked by one fork-join task
+    private static final int CHUNK = 256;
+    private static final int EMPTY = Snake.NO_SITE;
+
+    private static volatile int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    private volatile boolean parallelAutopilots = false;
+
+    private boolean[] collided;
+    private boolean[] failed;
+    private Move[] suggestions;
+    // open addressing table from the sites of the new heads to the number of heads on them, power of two sized
+    private int[] headSites;
+    private int[] headCounts;
+
+    public Collisions() {
+        collided = new boolean[0];
+        failed = new boolean[0];
+        suggestions = new Move[0];
+        headSites = new int[0];
+        headCounts = new int[0];
+    }
+
+    public static int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    // number of snakes above which the collisions are detected in parallel, e.g., for huge arenas
+    public static void setParallelThreshold(int threshold) {
+        parallelThreshold = threshold;
+    }
+
+    public void setParallelAutopilots(boolean parallel) {
+        parallelAutopilots = parallel;
+    }
+
+    public void ensureCapacity(int numSnakes) {
+        if (numSnakes > collided.length) {
+            collided = new boolean[2 * numSnakes];
+            failed = new boolean[2 * numSnakes];
+            suggestions = new Move[2 * numSnakes];
+            // at most half full, such that the probe sequences stay short
+            int tableSize = Integer.highestOneBit(4 * numSnakes - 1) << 1;
+            headSites = new int[tableSize];
+            headCounts = new int[tableSize];
+        }
+    }
+
+    // whether the i-th snake stepped on an occupied site or into a wall during the last call of `moveHeads`
+    public boolean collided(int i) {
+        return collided[i];
+    }
+
+    void moveHeads(GameState gameState, SnakeStore snakes, Board occupancy) {
+        int size = snakes.size();
+
+        // all tail ends which expired leave their sites first, such that the order of the snakes does not matter
+        for (int i = 0; i < size; ++i) {
+            if (!snakes.isDead(i)) {
+                int released = snakes.retract(i);
+                if (released != Snake.NO_SITE) {
+                    occupancy.release(Coordinate.x(released), Coordinate.y(released));
+                }
+            }
+        }
+
+        // the autopilots all decide on the same state, before any head moved
+        if (parallelAutopilots) {
+            steerInParallel(gameState, snakes, occupancy);
+        } else {
+            for (int i = 0; i < size; ++i) {
+                Autopilot autopilot = snakes.autopilot(i);
+                if (!snakes.isDead(i) && autopilot != null) {
+                    try {
+                        snakes.setDirection(i, autopilot.suggest(gameState, snakes.view(i)));
+                    } catch (RuntimeException e) {
+                        fail(failed, snakes, i, e);
+                    }
+                }
+            }
+        }
+        // in the order of the slots, such that the death callbacks are deterministic
+        for (int i = 0; i < size; ++i) {
+            if (failed[i]) {
+                failed[i] = false;
+                gameState.kill(i);
+            }
+        }
+
+        Arrays.fill(headSites, EMPTY);
+        Arrays.fill(headCounts, 0);
+        for (int i = 0; i < size; ++i) {
+            if (!snakes.isDead(i)) {
+                snakes.advanceHead(i);
+                countHead(snakes.head(i));
+            }
+        }
+
+        if (size > parallelThreshold) {
+            ForkJoinPool.commonPool().invoke(new Check(this, snakes, occupancy, 0, size));
+        } else {
+            check(snakes, occupancy, 0, size);
+        }
+
+        // heads on the board, also of the collided snakes, until their bodies are frozen or removed
+        for (int i = 0; i < size; ++i) {
+            int head = snakes.head(i);
+            if (!snakes.isDead(i) && occupancy.contains(Coordinate.x(head), Coordinate.y(head))) {
+                snakes.occupyHead(i, occupancy);
+            }
+        }
+    }
+
+    // the frozen copy lets the autopilots read without the lock, which the ticking thread holds
+    // it shares the board through a read-only `FrozenBoard`, since no site changes while the autopilots decide,
+    // so only the snakes are copied, i.e., O(snakes + their lengths) per tick and not O(board)
+    // the copy shares the random streams of the snakes, each of which is only used by the autopilot of its snake
+    private void steerInParallel(GameState gameState, SnakeStore snakes, Board occupancy) {
+        GameState frozen = new GameState(gameState, new FrozenBoard(occupancy), true);
+        try {
+            ForkJoinPool.commonPool().invoke(new Steer(frozen, snakes, suggestions, failed, 0, snakes.size()));
+            for (int i = 0; i < snakes.size(); ++i) {
+                if (suggestions[i] != null) {
+                    snakes.setDirection(i, suggestions[i]);
+                }
+            }
+        } finally {
+            // stale suggestions would steer another snake after its slot was reused
+            Arrays.fill(suggestions, 0, snakes.size(), null);
+        }
+    }
+
+    // the failure is applied to the game after all autopilots decided, see `moveHeads`
+    private static void fail(boolean[] failed, SnakeStore snakes, int i, RuntimeException e) {
+        logger.warn("autopilot of snake {} failed, the snake dies", snakes.id(i), e);
+        failed[i] = true;
+    }
+
+    // only reads the board and the table, such that disjoint ranges can be checked concurrently
+    private void check(SnakeStore snakes, Board occupancy, int from, int to) {
+        for (int i = from; i < to; ++i) {
+            if (snakes.isDead(i)) {
+                collided[i] = false;
+                continue;
+            }
+            int head = snakes.head(i);
+            int x = Coordinate.x(head);
+            int y = Coordinate.y(head);
+            // if another snake just moved its head here, both die
+            collided[i] = !occupancy.contains(x, y) || occupancy.isOccupied(x, y) || headCount(head) > 1;
+        }
+    }
+
+    private int slotOf(int site) {
+        int mask = headSites.length - 1;
+        int i = (site * 0x9E3779B9) >>> 7 & mask;
+        while (headSites[i] != EMPTY && headSites[i] != site) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void countHead(int site) {
+        int i = slotOf(site);
+        headSites[i] = site;
+        headCounts[i] += 1;
+    }
+
+    private int headCount(int site) {
+        return headCounts[slotOf(site)];
+    }
+
+    private static class Check extends RecursiveAction {
+        private final Collisions collisions;
+        private final SnakeStore snakes;
+        private final Board occupancy;
+        private final int from;
+        private final int to;
+
+        Check(Collisions collisions, SnakeStore snakes, Board occupancy, int from, int to) {
+            this.collisions = collisions;
+            this.snakes = snakes;
+            this.occupancy = occupancy;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CHUNK) {
+                collisions.check(snakes, occupancy, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(
+                    new Check(collisions, snakes, occupancy, from, mid),
+                    new Check(collisions, snakes, occupancy, mid, to)
+            );
+        }
+    }
+
+    // every autopilot is a task of its own, since a single suggestion may evaluate a neural network
+    private static class Steer extends RecursiveAction {
+        private final GameState frozen;
+        private final SnakeStore snakes;
+        private final Move[] suggestions;
+        private final boolean[] failed;
+        private final int from;
+        private final int to;
+
+        Steer(GameState frozen, SnakeStore snakes, Move[] suggestions, boolean[] failed, int from, int to) {
+            this.frozen = frozen;
+            this.snakes = snakes;
+            this.suggestions = suggestions;
+            this.failed = failed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(
+                        new Steer(frozen, snakes, suggestions, failed, from, mid),
+                        new Steer(frozen, snakes, suggestions, failed, mid, to)
+                );
+                return;
+            }
+            if (from == to || snakes.isDead(from)) {
+                return;
+            }
+            Autopilot autopilot = snakes.autopilot(from);
+            if (autopilot != null) {
+                try {
+                    suggestions[from] = autopilot.suggest(frozen, frozen.getSnake(snakes.id(from)));
+                } catch (RuntimeException e) {
+                    fail(failed, snakes, from, e);
+                }
+            }
+        }
+    }
+}
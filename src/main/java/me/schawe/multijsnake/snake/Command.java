@@ -0,0 +1,70 @@
+package me.schawe.multijsnake.snake;
+
+import me.schawe.multijsnake.snake.ai.Autopilot;
+
+/// input of a player (or of the game loop), which is queued by `GameState.submit` and applied at the start of the next tick
+/// such that threads handling inputs never have to wait for a running tick and only the tick changes the game
+public interface Command {
+    void applyTo(GameState gameState);
+
+    record Turn(SnakeId snakeId, Move move) implements Command {
+        @Override
+        public void applyTo(GameState gameState) {
+            // the snake might have been removed by a reset, after this command was submitted
+            if(gameState.hasSnake(snakeId)) {
+                gameState.turn(snakeId, move);
+            }
+        }
+    }
+
+    record Rename(SnakeId snakeId, String name) implements Command {
+        @Override
+        public void applyTo(GameState gameState) {
+            if(gameState.hasSnake(snakeId)) {
+                gameState.changeName(snakeId, name);
+            }
+        }
+    }
+
+    record Pause(boolean paused) implements Command {
+        @Override
+        public void applyTo(GameState gameState) {
+            gameState.setPause(paused);
+        }
+    }
+
+    /// commands queued before the reset are applied before it, those queued after it belong to the new round
+    record Reset() implements Command {
+        @Override
+        public void applyTo(GameState gameState) {
+            gameState.reset();
+        }
+    }
+
+    record AddAutopilot(Autopilot autopilot) implements Command {
+        @Override
+        public void applyTo(GameState gameState) {
+            gameState.addAISnake(autopilot);
+        }
+    }
+
+    /// the snake of a player who left dies now and disappears with the next reset
+    record Leave(SnakeId snakeId) implements Command {
+        @Override
+        public void applyTo(GameState gameState) {
+            if(gameState.hasSnake(snakeId)) {
+                gameState.kill(snakeId);
+                gameState.markForRemoval(snakeId);
+            }
+        }
+    }
+
+    /// replaces all expensive autopilots by their cheap fallback (see `Autopilot.degraded`), e.g., if the game cannot
+    /// keep its tick rate, the snakes keep their names
+    record DegradeAutopilots() implements Command {
+        @Override
+        public void applyTo(GameState gameState) {
+            gameState.degradeAutopilots();
+        }
+    }
+}
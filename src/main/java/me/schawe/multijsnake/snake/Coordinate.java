@@ -1,8 +1,15 @@
 package me.schawe.multijsnake.snake;
 
-import java.util.Objects;
-
 public class Coordinate {
+    // canonical instances for all sites of fields up to this size, including the surrounding walls
+    private static final int CACHE_SIZE = 256;
+    private static final Coordinate[] cache = new Coordinate[(CACHE_SIZE + 2) * (CACHE_SIZE + 2)];
+
+    public static final Coordinate UP = new Coordinate(0, -1);
+    public static final Coordinate DOWN = new Coordinate(0, 1);
+    public static final Coordinate LEFT = new Coordinate(-1, 0);
+    public static final Coordinate RIGHT = new Coordinate(1, 0);
+
     private final int x;
     private final int y;
 
@@ -19,12 +26,55 @@ public class Coordinate {
         y = yi;
     }
 
+    // canonical instance of this site, only allocates for sites of very large fields
+    public static Coordinate of(int x, int y) {
+        if(x < -1 || x > CACHE_SIZE || y < -1 || y > CACHE_SIZE) {
+            return new Coordinate(x, y);
+        }
+
+        int idx = (y + 1) * (CACHE_SIZE + 2) + (x + 1);
+        Coordinate c = cache[idx];
+        // racing threads might create two instances, but both are immutable and equal
+        if(c == null) {
+            c = new Coordinate(x, y);
+            cache[idx] = c;
+        }
+        return c;
+    }
+
+    /// packed representation for the hot paths, which do not allocate anything:
+    /// both components are stored as signed 16 bit values, since sites can be outside of the field
+    public static int pack(int x, int y) {
+        return (x << 16) | (y & 0xFFFF);
+    }
+
+    public static int x(int packed) {
+        return packed >> 16;
+    }
+
+    public static int y(int packed) {
+        return (short) packed;
+    }
+
+    public static Coordinate unpack(int packed) {
+        return of(x(packed), y(packed));
+    }
+
+    public static int neighbor(int packed, Move direction) {
+        return pack(x(packed) + direction.dx(), y(packed) + direction.dy());
+    }
+
+    public int toPacked() {
+        return pack(x, y);
+    }
+
+    // coordinates are immutable, so there is no need to allocate a new one
     public Coordinate copy() {
-        return new Coordinate(x, y);
+        return this;
     }
 
     public Coordinate add(Coordinate other){
-        return new Coordinate(
+        return of(
             this.x + other.x,
             this.y + other.y
         );
@@ -48,6 +98,6 @@ public class Coordinate {
 
     @Override
     public int hashCode() {
-        return Objects.hash(x, y);
+        return 31 * x + y;
     }
 }
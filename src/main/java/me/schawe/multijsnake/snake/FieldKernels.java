@@ -0,0 +1,53 @@
+package me.schawe.multijsnake.snake;
+
+/// bulk operations over a whole field, which dominate global features and flood fills on large fields
+/// `get` returns SIMD implementations based on the incubating Vector API if the JVM was started with
+/// `--add-modules jdk.incubator.vector` (the build, the tests and the docker image do this), otherwise scalar loops
+/// the vectorized class is only loaded after the check, such that e.g. the python trainer works without the module
+public interface FieldKernels {
+    // danger masks have one bit per `Move`, indexed by its ordinal
+    static int blockedBit(Move move) {
+        return 1 << move.ordinal();
+    }
+
+    static FieldKernels get() {
+        return Holder.KERNELS;
+    }
+
+    static FieldKernels scalar() {
+        return ScalarFieldKernels.INSTANCE;
+    }
+
+    boolean isVectorized();
+
+    /// `out[i]` is the number of turns site `i` stays occupied, for the expiry ticks of an `OccupancyGrid` at `tick`
+    void remainingTurns(int[] expiry, int tick, int[] out);
+
+    /// number of free sites reachable from (x, y) on a field given by one `long` of occupied bits per row
+    /// bits outside of `fieldMask` are walls, the start site is passable but only counts if it is free
+    int reachableFreeSites(long[] occupied, long fieldMask, int x, int y);
+
+    /// for every packed head (see `Coordinate.pack`) a mask of the directions which are blocked by walls or occupied sites
+    /// on a field given by one `long` of occupied bits per row
+    void blockedNeighbors(long[] occupied, int width, int[] heads, int count, int[] masks);
+
+    class Holder {
+        private static final String VECTOR_MODULE = "jdk.incubator.vector";
+        private static final FieldKernels KERNELS = load();
+
+        private Holder() {}
+
+        private static FieldKernels load() {
+            if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+                return scalar();
+            }
+            try {
+                return (FieldKernels) Class.forName("me.schawe.multijsnake.snake.VectorFieldKernels")
+                        .getDeclaredConstructor()
+                        .newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                return scalar();
+            }
+        }
+    }
+}
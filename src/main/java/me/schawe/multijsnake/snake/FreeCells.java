@@ -0,0 +1,70 @@
+package me.schawe.multijsnake.snake;
+
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/// indexable set of the free sites of a field, such that a uniformly random free site can be drawn in O(1)
+/// the sites are stored densely in `cells`, `position` maps every site to its index in `cells` or -1
+/// removal swaps the last cell into the gap, such that the dense part never has holes
+public class FreeCells {
+    private final int[] cells;
+    private final int[] position;
+    private int size;
+
+    public FreeCells(int numSites) {
+        cells = new int[numSites];
+        position = new int[numSites];
+        fill();
+    }
+
+    public FreeCells(FreeCells other) {
+        cells = other.cells.clone();
+        position = other.position.clone();
+        size = other.size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int idx) {
+        return position[idx] >= 0;
+    }
+
+    public void add(int idx) {
+        if(contains(idx)) {
+            return;
+        }
+        cells[size] = idx;
+        position[idx] = size;
+        size += 1;
+    }
+
+    public void remove(int idx) {
+        int pos = position[idx];
+        if(pos < 0) {
+            return;
+        }
+        size -= 1;
+        int last = cells[size];
+        cells[pos] = last;
+        position[last] = pos;
+        position[idx] = -1;
+    }
+
+    public int random(Random random) {
+        if(size == 0) {
+            throw new NoSuchElementException("no free site left");
+        }
+        return cells[random.nextInt(size)];
+    }
+
+    // mark every site as free
+    public void fill() {
+        for(int i = 0; i < cells.length; ++i) {
+            cells[i] = i;
+            position[i] = i;
+        }
+        size = cells.length;
+    }
+}
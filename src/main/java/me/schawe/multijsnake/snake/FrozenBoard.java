@@ -0,0 +1,63 @@
+package me.schawe.multijsnake.snake;
+
+import java.util.Random;
+
+/// board of the frozen copy of a game, which shares the sites of the game instead of copying them
+/// the autopilots of `Collisions.steerInParallel` decide on it while the board of the game does not change,
+/// writes through the frozen copy are ignored, like they would be on a copy which is thrown away afterwards
+/// copies are independent mutable boards, such that lookahead simulations work as usual
+final class FrozenBoard extends ReadOnlyOccupancy implements Board {
+    FrozenBoard(Board board) {
+        super(board);
+    }
+
+    @Override
+    public int getTick() {
+        return board.getTick();
+    }
+
+    @Override
+    public Board copy() {
+        return board.copy();
+    }
+
+    @Override
+    public boolean contains(int x, int y) {
+        return board.contains(x, y);
+    }
+
+    @Override
+    public int randomFreeSite(Random random) {
+        return board.randomFreeSite(random);
+    }
+
+    @Override
+    public void occupy(int x, int y, int turns) {
+        // read-only
+    }
+
+    @Override
+    public void release(int x, int y) {
+        // read-only
+    }
+
+    @Override
+    public void extend(int x, int y, int turns) {
+        // read-only
+    }
+
+    @Override
+    public void freeze(int x, int y) {
+        // read-only
+    }
+
+    @Override
+    public void advance() {
+        // read-only
+    }
+
+    @Override
+    public void clear() {
+        // read-only
+    }
+}
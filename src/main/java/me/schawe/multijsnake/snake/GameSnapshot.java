@@ -0,0 +1,30 @@
+package me.schawe.multijsnake.snake;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/// immutable state of a game, as it is sent to the clients
+/// it is built at the end of every tick and published by the game, such that readers never need the lock
+/// and never see a half updated game
+public record GameSnapshot(String id, int width, int height, int tick, Coordinate food, int score, boolean paused, boolean gameOver, Map<Integer, SnakeSnapshot> snakes) {
+    static GameSnapshot of(GameState gameState, SnakeStore snakes, int tick) {
+        Map<Integer, SnakeSnapshot> snakeSnapshots = new LinkedHashMap<>();
+        for (int slot = 0; slot < snakes.size(); ++slot) {
+            Snake snake = snakes.view(slot);
+            snakeSnapshots.put(snake.getIdx(), SnakeSnapshot.of(snake));
+        }
+
+        return new GameSnapshot(
+                gameState.getId(),
+                gameState.getWidth(),
+                gameState.getHeight(),
+                tick,
+                gameState.getFood(),
+                gameState.getScore(),
+                gameState.isPaused(),
+                gameState.isGameOver(),
+                Collections.unmodifiableMap(snakeSnapshots)
+        );
+    }
+}
@@ -2,16 +2,18 @@ package me.schawe.multijsnake.snake;
 
 import me.schawe.multijsnake.gamemanagement.exceptions.InvalidMapException;
 import me.schawe.multijsnake.snake.ai.Autopilot;
+import me.schawe.multijsnake.util.ForkableRandom;
 import me.schawe.multijsnake.util.IdGenerator;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Consumer;
@@ -23,47 +25,126 @@ public class GameState {
     private final int height;
     private Coordinate food;
     private final Map<SnakeId, Snake> snakes;
-    private Set<Coordinate> occupationMap;
+    // the state of the same snakes in insertion order, such that the tick can iterate linearly over primitive arrays
+    private final SnakeStore store;
+    private final Collisions collisions;
+    private final Board occupancy;
+    // handed out by `occupancy`, such that nobody outside can write to the board
+    private final OccupancyView occupancyView;
+    private final Topology topology;
     private int score;
-    private boolean paused;
+    // written by input threads without the lock
+    private volatile boolean paused;
     private boolean gameOver;
-    private final List<SnakeId> toBeRemoved;
+    private final Set<SnakeId> toBeRemoved;
+    // human snakes in `toBeRemoved`, such that `isAbandoned` does not need to look at every snake
+    private int humansToBeRemoved;
     // TODO: replace by event listener
     private Consumer<Snake> snakeDiesCallback;
     private final Random random;
+    // root of the random streams of the snakes
+    private final ForkableRandom streams;
+    private InputLog log;
     private int monotonousSnakeCounter;
     private final ReadWriteLock rwLock = new ReentrantReadWriteLock();
+    // inputs of the players, only drained by the thread calling `update`
+    private final Queue<Command> commands = new ConcurrentLinkedQueue<>();
+    // state of the game as of the end of the last tick, for readers which should not take the lock
+    private final AtomicReference<GameSnapshot> snapshot = new AtomicReference<>();
+    // forks are private to a single thread and nobody reads their snapshots
+    private final boolean publishing;
 
     public GameState(int width, int height, Random random, String id) {
         this.id = id;
         this.width = width;
         this.height = height;
         this.random = random;
+        this.streams = ForkableRandom.derive(random);
+        this.log = InputLog.DISABLED;
+        this.publishing = true;
 
         score = 0;
         snakes = new HashMap<>();
-        occupationMap = new HashSet<>();
-        toBeRemoved = new ArrayList<>();
+        store = new SnakeStore(4);
+        collisions = new Collisions();
+        occupancy = Board.forSize(width, height);
+        occupancyView = new ReadOnlyOccupancy(occupancy);
+        topology = Topology.of(width, height);
+        toBeRemoved = new LinkedHashSet<>();
+        humansToBeRemoved = 0;
         addFood();
         paused = true;
         gameOver = false;
         this.snakeDiesCallback = x -> {};
 
         monotonousSnakeCounter = 0;
+        publish();
     }
 
     public GameState(int width, int height, long seed) {
-        this(width, height, new Random(seed), IdGenerator.gen(new Random(seed)));
+        this(width, height, new ForkableRandom(seed), IdGenerator.gen(new Random(seed)));
     }
 
     // if we fix the id, derive the RNG state from this id.
     // this is handy for tests, but might be a bit surprising
     public GameState(int width, int height, String id) {
-        this(width, height, new Random(id.hashCode()), id);
+        this(width, height, new ForkableRandom(id.hashCode()), id);
     }
 
     public GameState(int width, int height) {
-        this(width, height, new Random(), IdGenerator.gen(new Random()));
+        this(width, height, new ForkableRandom(), IdGenerator.gen(new Random()));
+    }
+
+    // copy for `fork`, sharing nothing mutable with the original, or with a `FrozenBoard` for `Collisions`
+    // must be called with the lock held, for `shareRandoms` see `SnakeStore`
+    GameState(GameState other, Board occupancy, boolean shareRandoms) {
+        id = other.id;
+        width = other.width;
+        height = other.height;
+        food = other.food;
+        score = other.score;
+        paused = other.paused;
+        gameOver = other.gameOver;
+        monotonousSnakeCounter = other.monotonousSnakeCounter;
+        this.occupancy = occupancy;
+        occupancyView = new ReadOnlyOccupancy(occupancy);
+        topology = other.topology;
+        store = new SnakeStore(other.store, shareRandoms);
+        snakes = new HashMap<>();
+        for (int slot = 0; slot < store.size(); ++slot) {
+            snakes.put(store.id(slot), store.view(slot));
+        }
+        collisions = new Collisions();
+        collisions.ensureCapacity(store.size());
+        toBeRemoved = new LinkedHashSet<>(other.toBeRemoved);
+        humansToBeRemoved = other.humansToBeRemoved;
+        random = ForkableRandom.fork(other.random);
+        streams = ForkableRandom.fork(other.streams);
+        log = InputLog.DISABLED;
+        snakeDiesCallback = x -> {};
+        publishing = false;
+    }
+
+    // independent copy of the current state for lookahead simulations, e.g., by autopilots
+    // it copies the primitive arrays of board and snakes in bulk and skips callbacks, queued commands and snapshots
+    // the copy continues with the same random sequence, such that it predicts the food of the original
+    public GameState fork() {
+        rwLock.readLock().lock();
+        try {
+            return new GameState(this, occupancy.copy(), false);
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    // copy of the current state for tree search, which applies and takes back moves in place
+    public SearchState searchState() {
+        rwLock.readLock().lock();
+        try {
+            return new SearchState(width, height, store, food, score, ForkableRandom.fork(random));
+        } finally {
+            rwLock.readLock().unlock();
+        }
     }
 
     public String getId() {
@@ -108,6 +189,14 @@ public class GameState {
         return snakes.get(snakeId);
     }
 
+    public boolean hasSnake(SnakeId snakeId) {
+        return snakes.containsKey(snakeId);
+    }
+
+    public GameSnapshot snapshot() {
+        return snapshot.get();
+    }
+
     public boolean isPaused() {
         return paused;
     }
@@ -116,41 +205,100 @@ public class GameState {
         return gameOver;
     }
 
+    /// let all autopilots decide in parallel, e.g., for games with many expensive neural network bots
+    /// they always decide on the state before the heads move, in parallel they see a frozen copy of it,
+    /// which shares the board, but costs a copy of all snakes and a fork-join task per autopilot in every tick,
+    /// so it only pays off if the autopilots are expensive, then the tick only takes as long as the slowest of them
+    public void setParallelAutopilots(boolean parallel) {
+        collisions.setParallelAutopilots(parallel);
+    }
+
+    // the server submits `Command.Pause` instead, such that only the tick changes the game
+    // like all changes, it becomes visible to the clients with the snapshot of the next tick
     public void setPause(boolean paused) {
-        this.paused = paused;
+        rwLock.writeLock().lock();
+        try {
+            this.paused = paused;
+        } finally {
+            rwLock.writeLock().unlock();
+        }
     }
 
     public void setSnakeDiesCallback(Consumer<Snake> snakeDiesCallback) {
         this.snakeDiesCallback = snakeDiesCallback;
     }
 
+    // replaces every autopilot by its cheap fallback, see `Command.DegradeAutopilots`, the replay does the same
+    // autopilots which are cheap already return themselves, so degrading twice does not change anything
+    public void degradeAutopilots() {
+        rwLock.writeLock().lock();
+        try {
+            log.degrade();
+            for (int slot = 0; slot < store.size(); ++slot) {
+                Autopilot autopilot = store.autopilot(slot);
+                if (autopilot != null) {
+                    store.setAutopilot(slot, autopilot.degraded());
+                }
+            }
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    // the server submits `Command.Rename` instead, such that only the tick changes the game
+    // like all changes, it becomes visible to the clients with the snapshot of the next tick
     public void changeName(SnakeId id, String name) {
-        snakes.get(id).setName(name);
+        rwLock.writeLock().lock();
+        try {
+            getSnake(id).setName(name);
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    // record all inputs from now on, such that they can be replayed, see `InputLog`
+    public InputLog recordInputs() {
+        rwLock.writeLock().lock();
+        try {
+            log = new InputLog();
+            return log;
+        } finally {
+            rwLock.writeLock().unlock();
+        }
     }
 
+    // the overloads only log what they were given, such that a replay draws the rest from the random stream again
     public SnakeId addSnake() {
-        return addSnake(randomUnoccupiedSite());
+        return spawn(randomUnoccupiedSite(), Move.random(random), null, null, null);
     }
 
     public SnakeId addSnake(Coordinate coordinate) {
-        return addSnake(coordinate, Move.random(random));
+        return spawn(coordinate, Move.random(random), null, coordinate, null);
     }
 
     public SnakeId addSnake(Coordinate coordinate, Move direction) {
-        return addSnake(coordinate, direction, null);
+        return spawn(coordinate, direction, null, coordinate, direction);
     }
 
     public SnakeId addAISnake(Autopilot autopilot) {
-        return addSnake(randomUnoccupiedSite(), Move.random(random), autopilot);
+        return spawn(randomUnoccupiedSite(), Move.random(random), autopilot, null, null);
     }
 
     public SnakeId addSnake(Coordinate coordinate, Move direction, Autopilot autopilot) {
+        return spawn(coordinate, direction, autopilot, coordinate, direction);
+    }
+
+    private SnakeId spawn(Coordinate coordinate, Move direction, Autopilot autopilot, Coordinate givenSite, Move givenDirection) {
         rwLock.writeLock().lock();
         try {
             int idx = monotonousSnakeCounter++;
+            log.add(idx, givenSite, givenDirection, autopilot != null);
             SnakeId snakeId = new SnakeId(this.id, idx);
-            Snake snake = new Snake(snakeId, coordinate, direction, autopilot);
+            Snake snake = new Snake(store, snakeId, coordinate, direction, autopilot, streams.split());
             snakes.put(snakeId, snake);
+            collisions.ensureCapacity(store.size());
+            store.occupyHead(snake.slot(), occupancy);
+            publish();
             return snakeId;
         } finally {
             rwLock.writeLock().unlock();
@@ -159,12 +307,13 @@ public class GameState {
 
     // signal if a site is occupied by either tail or head
     public boolean isOccupied(Coordinate site) {
+        return isOccupied(site.getX(), site.getY());
+    }
+
+    public boolean isOccupied(int x, int y) {
         rwLock.readLock().lock();
         try {
-            Set<Coordinate> heads = snakes.values().stream()
-                    .map(Snake::getHead)
-                    .collect(Collectors.toSet());
-            return occupationMap.contains(site) || heads.contains(site);
+            return occupancy.isOccupied(x, y);
         } finally {
             rwLock.readLock().unlock();
         }
@@ -174,38 +323,52 @@ public class GameState {
     public boolean isOccupied(Coordinate site, Snake snake) {
         rwLock.readLock().lock();
         try {
-            Set<Coordinate> otherHeads = snakes.values().stream()
-                    .filter(s -> !s.equals(snake))
-                    .map(Snake::getHead)
-                    .collect(Collectors.toSet());
-
-            return occupationMap.contains(site) || otherHeads.contains(site);
+            int packed = site.toPacked();
+            if(packed != snake.headSite()) {
+                return occupancy.isOccupied(site.getX(), site.getY());
+            }
+            return store.isOtherHead(packed, snake.slot());
         } finally {
             rwLock.readLock().unlock();
         }
     }
 
+    // read-only, the board only changes through the game
+    public OccupancyView occupancy() {
+        return occupancyView;
+    }
+
+    // the board itself, e.g., for tests of its implementations
+    Board board() {
+        return occupancy;
+    }
+
     public boolean isWall(Coordinate coordinate) {
-        rwLock.readLock().lock();
-        try {
-            return coordinate.getX() < 0
-                    || coordinate.getX() >= width
-                    || coordinate.getY() < 0
-                    || coordinate.getY() >= height;
-        } finally {
-            rwLock.readLock().unlock();
-        }
+        return isWall(coordinate.getX(), coordinate.getY());
+    }
+
+    public boolean isWall(int x, int y) {
+        return !topology.contains(x, y);
+    }
+
+    // shared geometry of all games of this size, with precomputed neighbors
+    public Topology topology() {
+        return topology;
     }
 
     public boolean isEating(Snake snake) {
         rwLock.readLock().lock();
         try {
-            return snake.getHead().equals(food);
+            return eats(snake.headSite());
         } finally {
             rwLock.readLock().unlock();
         }
     }
 
+    private boolean eats(int head) {
+        return Coordinate.x(head) == food.getX() && Coordinate.y(head) == food.getY();
+    }
+
     private Coordinate randomUnoccupiedSite() {
         rwLock.readLock().lock();
         try {
@@ -214,25 +377,27 @@ public class GameState {
                 throw new RuntimeException("Perfect Game!");
             }
 
-            Coordinate site;
-            do {
-                site = randomSite();
-            } while (isOccupied(site));
-            return site;
+            return Coordinate.unpack(occupancy.randomFreeSite(random));
         } finally {
             rwLock.readLock().unlock();
         }
     }
 
-    private Coordinate randomSite() {
-        return new Coordinate((int) (random.nextFloat() * width), (int) (random.nextFloat() * height));
-    }
-
     public void addFood() {
-        addFood(randomUnoccupiedSite());
+        placeFood(randomUnoccupiedSite());
     }
 
     public void addFood(Coordinate coordinate) {
+        rwLock.writeLock().lock();
+        try {
+            log.food(coordinate);
+            placeFood(coordinate);
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    private void placeFood(Coordinate coordinate) {
         rwLock.writeLock().lock();
         try {
             food = coordinate;
@@ -241,56 +406,89 @@ public class GameState {
         }
     }
 
+    // queue a command, it will be applied at the start of the next tick, never blocks
+    public void submit(Command command) {
+        commands.add(command);
+    }
+
+    // e.g. such that a paused game still ticks to apply a `Command.Pause`
+    public boolean hasPendingCommands() {
+        return !commands.isEmpty();
+    }
+
+    private void applyCommands() {
+        Command command;
+        while ((command = commands.poll()) != null) {
+            command.applyTo(this);
+        }
+    }
+
     // TODO: call turn method on snake?
     public void turn(SnakeId id, Move move) {
         rwLock.writeLock().lock();
         try {
             Snake snake = getSnake(id);
-            if(!snake.isDead()) {
-                snake.setHeadDirection(
-                        move.toNext(snake.getLastHeadDirection())
-                            .orElse(snake.getHeadDirection())
-                );
+            log.turn(id.getIdx(), move);
+            // do not turn by 180 degree, without the `Optional` of `Move.toNext`, since commands apply it in the tick
+            if(!snake.isDead() && !move.isOpposite(snake.getLastHeadDirection())) {
+                snake.setHeadDirection(move);
             }
         } finally {
             rwLock.writeLock().unlock();
         }
     }
 
+    // 64-bit hash of the position: heads, tails with their remaining lifetime, lengths, directions, death and food
+    // the snakes keep the hashes of their tails up to date in O(1) per step, see `Zobrist`
+    // the tick and the ids of the game and the snakes are not part of it, such that equal positions of different games collide
+    public long hash() {
+        rwLock.readLock().lock();
+        try {
+            return store.hash() + Zobrist.food(food.toPacked());
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
     public boolean checkPerfectGame() {
         rwLock.readLock().lock();
         try {
-            int occupied_fields = snakes.values().stream()
-                    .map(snake -> snake.getLength() + 1)  // +1 for the heads
-                    .mapToInt(Integer::intValue)
-                    .sum();
-            return occupied_fields == width * height - 1; // -1 to place new food
+            return isPerfectGame();
         } finally {
             rwLock.readLock().unlock();
         }
     }
 
+    private boolean isPerfectGame() {
+        return store.occupiedSites() == width * height - 1; // -1 to place new food
+    }
+
     public void kill(SnakeId id) {
         rwLock.writeLock().lock();
         try {
             Snake snake = getSnake(id);
-            // killing snakes twice would lead to double highscores
-            if (!snake.isDead()) {
-                snake.kill();
-                snakeDiesCallback.accept(snake);
-            }
+            log.kill(id.getIdx());
+            kill(snake.slot());
         } finally {
             rwLock.writeLock().unlock();
         }
     }
 
+    // without logging, e.g., for `Collisions`, whose decisions are reproduced by the replay itself
+    void kill(int slot) {
+        // killing snakes twice would lead to double highscores
+        if (!store.isDead(slot)) {
+            store.kill(slot);
+            store.freeze(slot, occupancy);
+            snakeDiesCallback.accept(store.view(slot));
+        }
+    }
+
     // check whether this game was abandoned by all human players
     public boolean isAbandoned() {
         rwLock.readLock().lock();
         try {
-            long numActivePlayers = snakes.values().stream()
-                    .filter(snake -> snake.ai().isEmpty() && !toBeRemoved.contains(snake.getId()))
-                    .count();
+            int numActivePlayers = store.humans() - humansToBeRemoved;
 
             // games can only be created by joining, so if there are no active players, it is abandoned
             return numActivePlayers == 0;
@@ -302,7 +500,11 @@ public class GameState {
     public void markForRemoval(SnakeId id) {
         rwLock.writeLock().lock();
         try {
-            toBeRemoved.add(id);
+            Snake snake = snakes.get(id);
+            log.remove(id.getIdx());
+            if (toBeRemoved.add(id) && snake != null && snake.ai().isEmpty()) {
+                humansToBeRemoved += 1;
+            }
         } finally {
             rwLock.writeLock().unlock();
         }
@@ -311,73 +513,107 @@ public class GameState {
     public void reset() {
         rwLock.writeLock().lock();
         try {
+            log.reset();
             for(SnakeId snakeId : toBeRemoved) {
-                snakes.remove(snakeId);
+                Snake removed = snakes.remove(snakeId);
+                if (removed != null) {
+                    store.remove(removed.slot());
+                }
             }
             toBeRemoved.clear();
+            humansToBeRemoved = 0;
 
-            for(Snake snake : snakes.values()) {
-                snake.reset(randomSite());
+            occupancy.clear();
+            for(int slot = 0; slot < store.size(); ++slot) {
+                store.reset(slot, Coordinate.unpack(occupancy.randomFreeSite(random)), Move.random(random));
+                store.occupyHead(slot, occupancy);
             }
+            // the tails are empty now, so this is the cheapest moment to drop the regions abandoned by grown tails
+            store.compact();
             score = 0;
             addFood();
             paused = true;
             gameOver = false;
+            publish();
         } finally {
             rwLock.writeLock().unlock();
         }
     }
 
+    // snakes which grew since the last tick occupy their sites for longer
+    private void settleGrowth(int slot) {
+        int growth = store.takeGrowth(slot);
+        if (growth > 0) {
+            store.extend(slot, occupancy, growth);
+        }
+    }
+
     public void update() {
         rwLock.writeLock().lock();
         try {
-            if(checkPerfectGame()) {
-                gameOver = true;
-            }
+            // commands like `Command.Pause` take effect in this tick already, the log records the value the tick used
+            applyCommands();
+            boolean pausedThisTick = paused;
+            simulate(pausedThisTick);
+            log.tick(pausedThisTick);
+            publish();
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
 
-            if(gameOver) {
-                return;
-            }
+    // build and publish a new snapshot, must be called with the write lock held
+    private void publish() {
+        if (!publishing) {
+            return;
+        }
+        GameSnapshot published = GameSnapshot.of(this, store, occupancy.getTick());
+        snapshot.set(published);
+    }
 
-            if(paused) {
-                return;
-            }
+    // the simulation part of the tick, after the commands were applied, must be called with the write lock held
+    // the steady state of the tick does not allocate anything, besides the snapshot for the clients,
+    // `GameStateTest.tickDoesNotAllocate` keeps it that way, thus no streams, iterators or lambdas in here
+    private void simulate(boolean paused) {
+        if(isPerfectGame()) {
+            gameOver = true;
+        }
 
-            for (Snake snake : snakes.values()) {
-                if (snake.isDead()) {
-                    continue;
-                }
+        if(gameOver) {
+            return;
+        }
 
-                snake.ai().ifPresent(autopilot -> snake.setHeadDirection(autopilot.suggest(this, snake)));
+        if(paused) {
+            return;
+        }
 
-                if (isEating(snake)) {
-                    addFood();
-                    snake.incrementLength();
-                    score += 1;
-                }
+        for (int i = 0; i < store.size(); ++i) {
+            settleGrowth(i);
+        }
 
-                snake.step();
+        // a snake which eats keeps its tail end in place during this step
+        for (int i = 0; i < store.size(); ++i) {
+            if (!store.isDead(i) && eats(store.head(i))) {
+                addFood();
+                store.incrementLength(i);
+                settleGrowth(i);
+                score += 1;
             }
+        }
 
-            // update the occupation map after movement
-            occupationMap = snakes.values().stream()
-                .flatMap(snake -> snake.getTail().stream())
-                .collect(Collectors.toSet());
+        // the tail ends expire now, such that heads can follow directly into the vacated sites
+        occupancy.advance();
 
-            // check if any snakes stepped on occupied sites
-            for (Snake snake : snakes.values()) {
-                Coordinate head = snake.getHead();
-                if (isWall(head) || isOccupied(head, snake)) {
-                    kill(snake.getId());
-                }
-            }
+        collisions.moveHeads(this, store, occupancy);
 
-            if(snakes.values().stream().allMatch(Snake::isDead)) {
-                gameOver = true;
+        for (int i = 0; i < store.size(); ++i) {
+            if (collisions.collided(i)) {
+                kill(i);
             }
-        } finally {
-            rwLock.writeLock().unlock();
+        }
+
+        if(store.alive() == 0) {
+            gameOver = true;
         }
     }
 }
-
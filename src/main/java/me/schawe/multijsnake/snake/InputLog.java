@@ -0,0 +1,165 @@
+package me.schawe.multijsnake.snake;
+
+import me.schawe.multijsnake.snake.ai.Autopilot;
+
+import java.util.Arrays;
+import java.util.function.IntFunction;
+
+/// compact log of everything from outside which changed a game, i.e., the inputs of the players and the ticks
+/// every entry is one `long`: the kind in the top 4 bits, the index of the snake in the next 28 bits and an argument
+/// in the low 32 bits, consecutive ticks are merged into one entry
+/// the pause flag is changed without the lock, so instead of the changes, every tick records the value it used
+///
+/// games created with a seed (see the constructors of `GameState`) draw all random decisions of the engine and the
+/// built-in autopilots from streams derived from that seed, so a fresh game with the same seed, fed with this log
+/// by `replay`, runs through exactly the same states, without storing any of them
+public class InputLog {
+    // a log which does not record anything, such that the game does not need to check whether it records
+    static final InputLog DISABLED = new InputLog() {
+        @Override
+        void record(int kind, int idx, int arg) {}
+    };
+
+    static final int TICK = 1;
+    static final int TURN = 2;
+    static final int ADD = 3;
+    static final int KILL = 4;
+    static final int REMOVE = 5;
+    static final int RESET = 6;
+    static final int FOOD = 7;
+    static final int DEGRADE = 8;
+
+    private static final int KIND_SHIFT = 60;
+    private static final int IDX_SHIFT = 32;
+    private static final long IDX_MASK = (1L << 28) - 1;
+    // added snakes store their direction and whether they have an autopilot above the index of the snake
+    private static final int IDX_BITS = 24;
+    private static final int NO_DIRECTION = 4;
+    private static final int AUTOPILOT = 1 << 27;
+
+    private long[] entries = new long[16];
+    private int size = 0;
+
+    public int size() {
+        return size;
+    }
+
+    // raw entries, e.g., to store them
+    public long[] toArray() {
+        return Arrays.copyOf(entries, size);
+    }
+
+    public static InputLog of(long[] entries) {
+        InputLog log = new InputLog();
+        log.entries = Arrays.copyOf(entries, Math.max(16, entries.length));
+        log.size = entries.length;
+        return log;
+    }
+
+    void record(int kind, int idx, int arg) {
+        if (kind == TICK && size > 0 && kind(entries[size - 1]) == TICK
+                && idx(entries[size - 1]) == idx && arg(entries[size - 1]) < Integer.MAX_VALUE) {
+            entries[size - 1] += arg;
+            return;
+        }
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, 2 * size);
+        }
+        entries[size++] = (long) kind << KIND_SHIFT | (idx & IDX_MASK) << IDX_SHIFT | (arg & 0xFFFFFFFFL);
+    }
+
+    void tick(boolean paused) {
+        record(TICK, paused ? 1 : 0, 1);
+    }
+
+    void turn(int idx, Move move) {
+        record(TURN, idx, move.ordinal());
+    }
+
+    // start and direction are `null` if the game drew them, such that the replay draws them as well
+    void add(int idx, Coordinate start, Move direction, boolean autopilot) {
+        int dir = direction == null ? NO_DIRECTION : direction.ordinal();
+        int site = start == null ? Snake.NO_SITE : start.toPacked();
+        record(ADD, idx | dir << IDX_BITS | (autopilot ? AUTOPILOT : 0), site);
+    }
+
+    void kill(int idx) {
+        record(KILL, 0, idx);
+    }
+
+    void remove(int idx) {
+        record(REMOVE, 0, idx);
+    }
+
+    void reset() {
+        record(RESET, 0, 0);
+    }
+
+    void food(Coordinate site) {
+        record(FOOD, 0, site.toPacked());
+    }
+
+    // the autopilots were replaced at runtime, e.g., by the game loop, see `Command.DegradeAutopilots`
+    void degrade() {
+        record(DEGRADE, 0, 0);
+    }
+
+    private static int kind(long entry) {
+        return (int) (entry >>> KIND_SHIFT);
+    }
+
+    private static int idx(long entry) {
+        return (int) ((entry >>> IDX_SHIFT) & IDX_MASK);
+    }
+
+    private static int arg(long entry) {
+        return (int) entry;
+    }
+
+    /// apply this log to a fresh game, which was created with the same seed as the recorded one
+    /// `autopilots` creates the autopilot of the snake with the given index, for every snake which had one
+    public GameState replay(GameState target, IntFunction<Autopilot> autopilots) {
+        for (int i = 0; i < size; ++i) {
+            apply(target, entries[i], autopilots);
+        }
+        return target;
+    }
+
+    private static void apply(GameState target, long entry, IntFunction<Autopilot> autopilots) {
+        int arg = arg(entry);
+        switch (kind(entry)) {
+            case TICK -> {
+                for (int t = 0; t < arg; ++t) {
+                    target.setPause(idx(entry) != 0);
+                    target.update();
+                }
+            }
+            case TURN -> target.turn(new SnakeId(target.getId(), idx(entry)), Move.values()[arg]);
+            case ADD -> addSnake(target, idx(entry), arg, autopilots);
+            case KILL -> target.kill(new SnakeId(target.getId(), arg));
+            case REMOVE -> target.markForRemoval(new SnakeId(target.getId(), arg));
+            case RESET -> target.reset();
+            case FOOD -> target.addFood(Coordinate.unpack(arg));
+            case DEGRADE -> target.degradeAutopilots();
+            default -> throw new IllegalStateException("invalid entry of input log: " + entry);
+        }
+    }
+
+    // mirrors the overloads of `GameState.addSnake`
+    private static void addSnake(GameState target, int flags, int site, IntFunction<Autopilot> autopilots) {
+        int idx = flags & ((1 << IDX_BITS) - 1);
+        int dir = (flags >> IDX_BITS) & 0x7;
+        Autopilot autopilot = (flags & AUTOPILOT) != 0 ? autopilots.apply(idx) : null;
+        if (site == Snake.NO_SITE) {
+            if (autopilot != null) {
+                target.addAISnake(autopilot);
+            } else {
+                target.addSnake();
+            }
+        } else if (dir == NO_DIRECTION) {
+            target.addSnake(Coordinate.unpack(site));
+        } else {
+            target.addSnake(Coordinate.unpack(site), Move.values()[dir], autopilot);
+        }
+    }
+}
@@ -9,6 +9,11 @@ public enum Move {
     up,
     down;
 
+    // relative directions by ordinal, such that turning is a single array read
+    private static final Move[] LEFT_OF = {down, up, left, right};
+    private static final Move[] RIGHT_OF = {up, down, right, left};
+    private static final Move[] BACK_OF = {right, left, down, up};
+
     public boolean isOpposite(Move other) {
         return this == left && other == right
                 || this == right && other == left
@@ -28,10 +33,27 @@ public enum Move {
 
     public Coordinate toCoord() {
         return switch (this) {
-            case up -> new Coordinate(0, -1);
-            case down -> new Coordinate(0, 1);
-            case left -> new Coordinate(-1, 0);
-            case right -> new Coordinate(1, 0);
+            case up -> Coordinate.UP;
+            case down -> Coordinate.DOWN;
+            case left -> Coordinate.LEFT;
+            case right -> Coordinate.RIGHT;
+        };
+    }
+
+    // offsets without allocating a coordinate
+    public int dx() {
+        return switch (this) {
+            case up, down -> 0;
+            case left -> -1;
+            case right -> 1;
+        };
+    }
+
+    public int dy() {
+        return switch (this) {
+            case left, right -> 0;
+            case up -> -1;
+            case down -> 1;
         };
     }
 
@@ -55,21 +77,11 @@ public enum Move {
     }
 
     public Move rLeft() {
-        return switch (this) {
-            case up -> Move.left;
-            case down -> Move.right;
-            case left -> Move.down;
-            case right -> Move.up;
-        };
+        return LEFT_OF[ordinal()];
     }
 
     public Move rRight() {
-        return switch (this) {
-            case up -> Move.right;
-            case down -> Move.left;
-            case left -> Move.up;
-            case right -> Move.down;
-        };
+        return RIGHT_OF[ordinal()];
     }
 
     public Move straight() {
@@ -77,11 +89,6 @@ public enum Move {
     }
 
     public Move back() {
-        return switch (this) {
-            case up -> Move.down;
-            case down -> Move.up;
-            case left -> Move.right;
-            case right -> Move.left;
-        };
+        return BACK_OF[ordinal()];
     }
 }
@@ -0,0 +1,193 @@
+package me.schawe.multijsnake.snake;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/// flat occupation map of the field, indexed by `y * width + x`
+/// every site stores the tick at which it becomes free again, such that tail ends do not need to be removed
+/// sites of dead snakes are frozen: they store the negative number of remaining turns and never become free
+/// the free sites are additionally kept in a `FreeCells` set, since tail ends expire implicitly,
+/// the owner has to `release` them, when they leave the tail of their snake
+public class OccupancyGrid implements Board {
+    // `values()` copies the array on every call
+    private static final Move[] MOVES = Move.values();
+
+    private final int width;
+    private final int height;
+    private final int[] expiry;
+    private final FreeCells free;
+    private int tick;
+
+    public OccupancyGrid(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.expiry = new int[width * height];
+        this.free = new FreeCells(width * height);
+        this.tick = 0;
+    }
+
+    public OccupancyGrid(OccupancyGrid other) {
+        this.width = other.width;
+        this.height = other.height;
+        this.expiry = other.expiry.clone();
+        this.free = new FreeCells(other.free);
+        this.tick = other.tick;
+    }
+
+    @Override
+    public OccupancyGrid copy() {
+        return new OccupancyGrid(this);
+    }
+
+    @Override
+    public int width() {
+        return width;
+    }
+
+    @Override
+    public int height() {
+        return height;
+    }
+
+    @Override
+    public int getTick() {
+        return tick;
+    }
+
+    @Override
+    public boolean contains(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    private boolean isOccupied(int idx) {
+        return expiry[idx] < 0 || expiry[idx] > tick;
+    }
+
+    @Override
+    public boolean isOccupied(int x, int y) {
+        return contains(x, y) && isOccupied(y * width + x);
+    }
+
+    @Override
+    public int remainingTurns(int x, int y) {
+        if(!contains(x, y)) {
+            return 0;
+        }
+        int e = expiry[y * width + x];
+        if(e < 0) {
+            return -e;
+        }
+        return Math.max(0, e - tick);
+    }
+
+    @Override
+    public void remainingTurns(int[] out) {
+        FieldKernels.get().remainingTurns(expiry, tick, out);
+    }
+
+    @Override
+    public long freeSites() {
+        return free.size();
+    }
+
+    @Override
+    public int reachableFreeSites(int x, int y) {
+        return floodFill(this, x, y);
+    }
+
+    // breadth first search over the free sites, works for every view
+    public static int floodFill(OccupancyView view, int x, int y) {
+        int width = view.width();
+        int height = view.height();
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return 0;
+        }
+
+        Topology topology = Topology.of(width, height);
+        boolean[] visited = new boolean[width * height];
+        int[] queue = new int[width * height];
+        int head = 0;
+        int end = 0;
+        int count = 0;
+        queue[end++] = y * width + x;
+        visited[y * width + x] = true;
+        while (head < end) {
+            int idx = queue[head++];
+            // only the start site can be occupied, everything else was checked before it was queued
+            if (!view.isOccupied(topology.x(idx), topology.y(idx))) {
+                count += 1;
+            }
+            for (Move move : MOVES) {
+                int next = topology.neighbor(idx, move);
+                if (next != Topology.WALL && !visited[next] && !view.isOccupied(topology.x(next), topology.y(next))) {
+                    visited[next] = true;
+                    queue[end++] = next;
+                }
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int randomFreeSite(Random random) {
+        int idx = free.random(random);
+        return Coordinate.pack(idx % width, idx / width);
+    }
+
+    @Override
+    public void occupy(int x, int y, int turns) {
+        if(!contains(x, y)) {
+            return;
+        }
+        int idx = y * width + x;
+        if(expiry[idx] >= 0) {
+            expiry[idx] = Math.max(expiry[idx], tick + turns);
+        }
+        free.remove(idx);
+    }
+
+    @Override
+    public void release(int x, int y) {
+        if(!contains(x, y)) {
+            return;
+        }
+        int idx = y * width + x;
+        if(!isOccupied(idx)) {
+            free.add(idx);
+        }
+    }
+
+    @Override
+    public void extend(int x, int y, int turns) {
+        if(!contains(x, y)) {
+            return;
+        }
+        int idx = y * width + x;
+        if(expiry[idx] > tick) {
+            expiry[idx] += turns;
+        }
+    }
+
+    @Override
+    public void freeze(int x, int y) {
+        if(!contains(x, y)) {
+            return;
+        }
+        int idx = y * width + x;
+        if(expiry[idx] > tick) {
+            expiry[idx] = tick - expiry[idx];
+        }
+    }
+
+    @Override
+    public void advance() {
+        tick += 1;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(expiry, 0);
+        free.fill();
+        tick = 0;
+    }
+}
@@ -0,0 +1,51 @@
+package me.schawe.multijsnake.snake;
+
+/// read-only view on the occupation of the field
+/// sites outside of the field are never occupied
+public interface OccupancyView {
+    int width();
+    int height();
+
+    boolean isOccupied(int x, int y);
+
+    /// number of turns the site will stay occupied by a snake, 0 if the site is free
+    /// sites of dead snakes stay occupied, they report the number of turns left at the time of death
+    int remainingTurns(int x, int y);
+
+    /// `remainingTurns` of all sites at once, `out[y * width + x]`
+    default void remainingTurns(int[] out) {
+        for (int y = 0; y < height(); ++y) {
+            for (int x = 0; x < width(); ++x) {
+                out[y * width() + x] = remainingTurns(x, y);
+            }
+        }
+    }
+
+    /// for the first `count` packed heads (see `Coordinate.pack`) a mask of the directions which are blocked,
+    /// with the bits given by `FieldKernels.blockedBit`
+    default void blockedNeighbors(int[] heads, int count, int[] masks) {
+        for (int i = 0; i < count; ++i) {
+            int mask = 0;
+            for (Move move : Move.values()) {
+                int next = Coordinate.neighbor(heads[i], move);
+                if (isBlocked(Coordinate.x(next), Coordinate.y(next))) {
+                    mask |= FieldKernels.blockedBit(move);
+                }
+            }
+            masks[i] = mask;
+        }
+    }
+
+    /// number of sites of the field which are not occupied, `long` since huge fields might have more than 2^31 sites
+    long freeSites();
+
+    /// sites which would kill a snake stepping onto them, i.e., walls and occupied sites
+    default boolean isBlocked(int x, int y) {
+        return x < 0 || x >= width() || y < 0 || y >= height() || isOccupied(x, y);
+    }
+
+    /// number of free sites a snake at (x, y) could reach, the start site itself only counts if it is free
+    /// on huge fields the count stops at `ChunkedBoard.FLOOD_FILL_LIMIT`, callers comparing regions must treat this
+    /// value as "at least this large", e.g., two regions both at the limit are not known to be equally large
+    int reachableFreeSites(int x, int y);
+}
@@ -0,0 +1,56 @@
+package me.schawe.multijsnake.snake;
+
+/// read-only view of the board of a game, see `GameState.occupancy`
+/// it is not a `Board`, such that callers cannot cast it back and write to the board of the game
+class ReadOnlyOccupancy implements OccupancyView {
+    protected final Board board;
+
+    ReadOnlyOccupancy(Board board) {
+        this.board = board;
+    }
+
+    @Override
+    public int width() {
+        return board.width();
+    }
+
+    @Override
+    public int height() {
+        return board.height();
+    }
+
+    @Override
+    public boolean isOccupied(int x, int y) {
+        return board.isOccupied(x, y);
+    }
+
+    @Override
+    public int remainingTurns(int x, int y) {
+        return board.remainingTurns(x, y);
+    }
+
+    @Override
+    public void remainingTurns(int[] out) {
+        board.remainingTurns(out);
+    }
+
+    @Override
+    public void blockedNeighbors(int[] heads, int count, int[] masks) {
+        board.blockedNeighbors(heads, count, masks);
+    }
+
+    @Override
+    public long freeSites() {
+        return board.freeSites();
+    }
+
+    @Override
+    public boolean isBlocked(int x, int y) {
+        return board.isBlocked(x, y);
+    }
+
+    @Override
+    public int reachableFreeSites(int x, int y) {
+        return board.reachableFreeSites(x, y);
+    }
+}
@@ -0,0 +1,89 @@
+package me.schawe.multijsnake.snake;
+
+/// plain loops for `FieldKernels`, used if the Vector API is not available and for the remainders of the vectorized loops
+class ScalarFieldKernels implements FieldKernels {
+    static final ScalarFieldKernels INSTANCE = new ScalarFieldKernels();
+    private static final Move[] MOVES = Move.values();
+
+    @Override
+    public boolean isVectorized() {
+        return false;
+    }
+
+    @Override
+    public void remainingTurns(int[] expiry, int tick, int[] out) {
+        remainingTurns(expiry, tick, out, 0);
+    }
+
+    static void remainingTurns(int[] expiry, int tick, int[] out, int from) {
+        for (int i = from; i < expiry.length; ++i) {
+            int e = expiry[i];
+            out[i] = e < 0 ? -e : Math.max(0, e - tick);
+        }
+    }
+
+    // grows the reachable set of all rows at once, until it does not change anymore
+    @Override
+    public int reachableFreeSites(long[] occupied, long fieldMask, int x, int y) {
+        int height = occupied.length;
+        long[] free = new long[height];
+        long[] reach = new long[height];
+        for (int i = 0; i < height; ++i) {
+            free[i] = ~occupied[i] & fieldMask;
+        }
+        // the start may be occupied, e.g., by the head of the snake asking
+        free[y] |= 1L << x;
+        reach[y] = 1L << x;
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < height; ++i) {
+                long r = reach[i];
+                if (i > 0) {
+                    r |= reach[i - 1];
+                }
+                if (i < height - 1) {
+                    r |= reach[i + 1];
+                }
+                r &= free[i];
+                // spread along the row, until the run of free sites is filled
+                long prev;
+                do {
+                    prev = r;
+                    r |= ((r << 1) | (r >>> 1)) & free[i];
+                } while (r != prev);
+
+                if (r != reach[i]) {
+                    reach[i] = r;
+                    changed = true;
+                }
+            }
+        }
+
+        int count = 0;
+        for (int i = 0; i < height; ++i) {
+            count += Long.bitCount(reach[i] & ~occupied[i]);
+        }
+        return count;
+    }
+
+    @Override
+    public void blockedNeighbors(long[] occupied, int width, int[] heads, int count, int[] masks) {
+        blockedNeighbors(occupied, width, heads, masks, 0, count);
+    }
+
+    static void blockedNeighbors(long[] occupied, int width, int[] heads, int[] masks, int from, int to) {
+        for (int i = from; i < to; ++i) {
+            int mask = 0;
+            for (Move move : MOVES) {
+                int x = Coordinate.x(heads[i]) + move.dx();
+                int y = Coordinate.y(heads[i]) + move.dy();
+                if (x < 0 || x >= width || y < 0 || y >= occupied.length || (occupied[y] & (1L << x)) != 0) {
+                    mask |= FieldKernels.blockedBit(move);
+                }
+            }
+            masks[i] = mask;
+        }
+    }
+}
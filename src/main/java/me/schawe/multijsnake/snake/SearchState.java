@@ -0,0 +1,413 @@
+package me.schawe.multijsnake.snake;
+
+import me.schawe.multijsnake.util.ForkableRandom;
+
+import java.util.Arrays;
+
+/// search-only variant of the `GameState`, which applies a joint move of all snakes in place with `make`
+/// and takes it back exactly with `unmake`, such that tree search does not need to copy the board for every node
+/// every `make` pushes one frame onto a primitive undo stack: food, score and RNG state,
+/// followed by the released tail tip and some flags (ate, moved, died, old directions) for every snake
+///
+/// the rules are the ones of `GameState.simulate`, but the field only counts the snakes on every site
+/// and new food is drawn by rejection sampling, such that the food may land elsewhere than in the real game
+/// fields with more than `Board.MAX_DENSE_SITES` sites are not supported
+public class SearchState {
+    // food, score and the two halves of the RNG state
+    private static final int HEADER = 4;
+    private static final int ENTRY = 2;
+    // failed draws for new food before it falls back to counting the free sites
+    private static final int MAX_REJECTIONS = 64;
+    private static final Move[] MOVES = Move.values();
+
+    private static final int ATE = 1;
+    private static final int MOVED = 1 << 1;
+    private static final int DIED = 1 << 2;
+    // the old direction and last direction are stored as ordinals in the bits above
+    private static final int DIRECTION_SHIFT = 3;
+    private static final int LAST_DIRECTION_SHIFT = 5;
+
+    private final int width;
+    private final int height;
+    // number of snakes on every site, dead snakes stay on their sites like in the `GameState`
+    private final int[] count;
+    private int occupied;
+
+    private final int numSnakes;
+    private final SnakeId[] ids;
+    private final int[] head;
+    private final byte[] direction;
+    private final byte[] lastDirection;
+    private final int[] length;
+    private final boolean[] dead;
+    private final boolean[] collided;
+    private int alive;
+    private int totalLength;
+    // the tails as ring buffers with a power of two capacity, the first site is the end of the tail
+    private final int[][] tail;
+    private final int[] tailStart;
+    private final int[] tailSize;
+    // polynomial hashes of the tails and `B^tailSize`, see `Zobrist`
+    private final long[] tailHash;
+    private final long[] tailPower;
+
+    private int food;
+    private int score;
+    private final ForkableRandom random;
+
+    private int[] undo;
+    private int top;
+    private int depth;
+
+    // called by `GameState.searchState` with its lock held
+    SearchState(int width, int height, SnakeStore store, Coordinate food, int score, ForkableRandom random) {
+        if ((long) width * height > Board.MAX_DENSE_SITES) {
+            throw new IllegalArgumentException("the field is too large for a search: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.food = food.toPacked();
+        this.score = score;
+        this.random = random;
+
+        count = new int[width * height];
+        numSnakes = store.size();
+        ids = new SnakeId[numSnakes];
+        head = new int[numSnakes];
+        direction = new byte[numSnakes];
+        lastDirection = new byte[numSnakes];
+        length = new int[numSnakes];
+        dead = new boolean[numSnakes];
+        collided = new boolean[numSnakes];
+        tail = new int[numSnakes][];
+        tailStart = new int[numSnakes];
+        tailSize = new int[numSnakes];
+        tailHash = new long[numSnakes];
+        tailPower = new long[numSnakes];
+        for (int i = 0; i < numSnakes; ++i) {
+            copySnake(store, i);
+        }
+
+        undo = new int[64 * (HEADER + ENTRY * numSnakes)];
+        top = 0;
+        depth = 0;
+    }
+
+    private void copySnake(SnakeStore store, int i) {
+        ids[i] = store.id(i);
+        head[i] = store.head(i);
+        direction[i] = (byte) store.direction(i).ordinal();
+        lastDirection[i] = (byte) store.lastDirection(i).ordinal();
+        length[i] = store.length(i);
+        dead[i] = store.isDead(i);
+        totalLength += length[i];
+        if (!dead[i]) {
+            alive += 1;
+        }
+        int size = store.tailSize(i);
+        tail[i] = new int[Integer.highestOneBit(Math.max(16, size + length[i])) << 1];
+        tailSize[i] = size;
+        tailPower[i] = 1;
+        for (int k = 0; k < size; ++k) {
+            tail[i][k] = store.tailSite(i, k);
+            enter(tail[i][k]);
+            tailHash[i] += Zobrist.site(tail[i][k]) * tailPower[i];
+            tailPower[i] *= Zobrist.B;
+        }
+        enter(head[i]);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int numSnakes() {
+        return numSnakes;
+    }
+
+    public SnakeId id(int i) {
+        return ids[i];
+    }
+
+    // packed site of the head, see `Coordinate.pack`
+    public int head(int i) {
+        return head[i];
+    }
+
+    public Move direction(int i) {
+        return MOVES[direction[i]];
+    }
+
+    public int length(int i) {
+        return length[i];
+    }
+
+    public boolean isDead(int i) {
+        return dead[i];
+    }
+
+    public int tailSize(int i) {
+        return tailSize[i];
+    }
+
+    // the k-th packed site of the tail, counted from the end of the tail
+    public int tailSite(int i, int k) {
+        if (k < 0 || k >= tailSize[i]) {
+            throw new IndexOutOfBoundsException(k);
+        }
+        return tail[i][(tailStart[i] + k) & (tail[i].length - 1)];
+    }
+
+    // packed site of the food
+    public int food() {
+        return food;
+    }
+
+    public int score() {
+        return score;
+    }
+
+    public int alive() {
+        return alive;
+    }
+
+    // number of moves which can be taken back by `unmake`
+    public int depth() {
+        return depth;
+    }
+
+    // the same hash as `GameState.hash` would give for this position
+    public long hash() {
+        long sum = Zobrist.food(food);
+        for (int i = 0; i < numSnakes; ++i) {
+            sum += Zobrist.snake(tailHash[i], head[i], MOVES[direction[i]], length[i], dead[i]);
+        }
+        return sum;
+    }
+
+    public boolean isTerminal() {
+        return alive == 0 || totalLength + numSnakes == width * height - 1;
+    }
+
+    public boolean isOccupied(int x, int y) {
+        return contains(x, y) && count[y * width + x] > 0;
+    }
+
+    private boolean contains(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    private boolean contains(int site) {
+        return contains(Coordinate.x(site), Coordinate.y(site));
+    }
+
+    private int index(int site) {
+        return Coordinate.y(site) * width + Coordinate.x(site);
+    }
+
+    // heads outside of the field are not recorded, like in the `Board`
+    private void enter(int site) {
+        if (contains(site) && count[index(site)]++ == 0) {
+            occupied += 1;
+        }
+    }
+
+    private void leave(int site) {
+        if (contains(site) && --count[index(site)] == 0) {
+            occupied -= 1;
+        }
+    }
+
+    // apply one tick in which every living snake takes the move at its index, `null` keeps its current direction
+    // moves which would turn a snake by 180 degree are ignored, like `GameState.turn` does
+    public void make(Move[] moves) {
+        ensureUndoCapacity();
+        int frame = top;
+        undo[frame] = food;
+        undo[frame + 1] = score;
+        undo[frame + 2] = (int) (random.getState() >>> 32);
+        undo[frame + 3] = (int) random.getState();
+        top += HEADER + ENTRY * numSnakes;
+        depth += 1;
+        for (int i = 0; i < numSnakes; ++i) {
+            undo[entry(frame, i)] = Snake.NO_SITE;
+            undo[entry(frame, i) + 1] = direction[i] << DIRECTION_SHIFT | lastDirection[i] << LAST_DIRECTION_SHIFT;
+        }
+
+        if (isTerminal()) {
+            return;
+        }
+
+        eat(frame);
+        for (int i = 0; i < numSnakes; ++i) {
+            if (!dead[i]) {
+                undo[entry(frame, i)] = retract(i);
+            }
+        }
+        moveHeads(frame, moves);
+    }
+
+    private static int entry(int frame, int i) {
+        return frame + HEADER + ENTRY * i;
+    }
+
+    private void ensureUndoCapacity() {
+        int needed = top + HEADER + ENTRY * numSnakes;
+        if (needed > undo.length) {
+            undo = Arrays.copyOf(undo, 2 * needed);
+        }
+    }
+
+    // a snake which eats keeps its tail end in place during this step
+    private void eat(int frame) {
+        for (int i = 0; i < numSnakes; ++i) {
+            if (!dead[i] && head[i] == food) {
+                length[i] += 1;
+                totalLength += 1;
+                score += 1;
+                food = randomFreeSite();
+                undo[entry(frame, i) + 1] |= ATE;
+            }
+        }
+    }
+
+    // the tail is never longer than the snake, so at most one site is released per step
+    private int retract(int i) {
+        if (tailSize[i] < length[i]) {
+            return Snake.NO_SITE;
+        }
+        int site = tail[i][tailStart[i]];
+        tailStart[i] = (tailStart[i] + 1) & (tail[i].length - 1);
+        tailSize[i] -= 1;
+        tailHash[i] = (tailHash[i] - Zobrist.site(site)) * Zobrist.B_INVERSE;
+        tailPower[i] *= Zobrist.B_INVERSE;
+        leave(site);
+        return site;
+    }
+
+    private void moveHeads(int frame, Move[] moves) {
+        for (int i = 0; i < numSnakes; ++i) {
+            collided[i] = false;
+            if (dead[i]) {
+                continue;
+            }
+
+            Move current = MOVES[direction[i]];
+            Move move = moves[i] == null ? current : moves[i].toNext(MOVES[lastDirection[i]]).orElse(current);
+            direction[i] = (byte) move.ordinal();
+            lastDirection[i] = direction[i];
+            pushTail(i, head[i]);
+            head[i] = Coordinate.pack(Coordinate.x(head[i]) + move.dx(), Coordinate.y(head[i]) + move.dy());
+            undo[entry(frame, i) + 1] |= MOVED;
+
+            if (!contains(head[i])) {
+                collided[i] = true;
+                continue;
+            }
+            if (count[index(head[i])] > 0) {
+                collided[i] = true;
+                // if another snake just moved its head here, both die
+                for (int j = 0; j < i; ++j) {
+                    if (!dead[j] && head[j] == head[i]) {
+                        collided[j] = true;
+                    }
+                }
+            }
+            enter(head[i]);
+        }
+
+        for (int i = 0; i < numSnakes; ++i) {
+            if (collided[i]) {
+                dead[i] = true;
+                alive -= 1;
+                undo[entry(frame, i) + 1] |= DIED;
+            }
+        }
+    }
+
+    private void pushTail(int i, int site) {
+        if (tailSize[i] == tail[i].length) {
+            int[] grown = new int[2 * tail[i].length];
+            for (int k = 0; k < tailSize[i]; ++k) {
+                grown[k] = tailSite(i, k);
+            }
+            tail[i] = grown;
+            tailStart[i] = 0;
+        }
+        tail[i][(tailStart[i] + tailSize[i]) & (tail[i].length - 1)] = site;
+        tailSize[i] += 1;
+        tailHash[i] += Zobrist.site(site) * tailPower[i];
+        tailPower[i] *= Zobrist.B;
+    }
+
+    // take back the last `make`, restoring the state exactly, including the RNG
+    public void unmake() {
+        if (depth == 0) {
+            throw new IllegalStateException("nothing to unmake");
+        }
+        depth -= 1;
+        top -= HEADER + ENTRY * numSnakes;
+        int frame = top;
+
+        for (int i = numSnakes - 1; i >= 0; --i) {
+            undoSnake(i, undo[entry(frame, i)], undo[entry(frame, i) + 1]);
+        }
+
+        food = undo[frame];
+        score = undo[frame + 1];
+        random.setState((long) undo[frame + 2] << 32 | (undo[frame + 3] & 0xFFFFFFFFL));
+    }
+
+    private void undoSnake(int i, int tip, int flags) {
+        if ((flags & DIED) != 0) {
+            dead[i] = false;
+            alive += 1;
+        }
+        if ((flags & MOVED) != 0) {
+            leave(head[i]);
+            tailSize[i] -= 1;
+            head[i] = tail[i][(tailStart[i] + tailSize[i]) & (tail[i].length - 1)];
+            tailPower[i] *= Zobrist.B_INVERSE;
+            tailHash[i] -= Zobrist.site(head[i]) * tailPower[i];
+        }
+        if (tip != Snake.NO_SITE) {
+            tailStart[i] = (tailStart[i] - 1) & (tail[i].length - 1);
+            tail[i][tailStart[i]] = tip;
+            tailSize[i] += 1;
+            tailHash[i] = tailHash[i] * Zobrist.B + Zobrist.site(tip);
+            tailPower[i] *= Zobrist.B;
+            enter(tip);
+        }
+        if ((flags & ATE) != 0) {
+            length[i] -= 1;
+            totalLength -= 1;
+        }
+        direction[i] = (byte) ((flags >> DIRECTION_SHIFT) & 3);
+        lastDirection[i] = (byte) ((flags >> LAST_DIRECTION_SHIFT) & 3);
+    }
+
+    // the field of a search is usually mostly empty, so a few random draws almost always suffice
+    private int randomFreeSite() {
+        int sites = width * height;
+        if (occupied >= sites) {
+            return Snake.NO_SITE;
+        }
+        for (int i = 0; i < MAX_REJECTIONS; ++i) {
+            int idx = random.nextInt(sites);
+            if (count[idx] == 0) {
+                return Coordinate.pack(idx % width, idx / width);
+            }
+        }
+        int n = random.nextInt(sites - occupied);
+        for (int idx = 0; idx < sites; ++idx) {
+            if (count[idx] == 0 && n-- == 0) {
+                return Coordinate.pack(idx % width, idx / width);
+            }
+        }
+        throw new IllegalStateException("no free site left");
+    }
+}
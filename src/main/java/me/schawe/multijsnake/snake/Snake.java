@@ -1,74 +1,114 @@
 package me.schawe.multijsnake.snake;
 
 import me.schawe.multijsnake.snake.ai.Autopilot;
+import me.schawe.multijsnake.util.ForkableRandom;
 
 import java.util.*;
 
+/// thin view on one slot of a `SnakeStore`
+/// snakes created by the public constructors live in a store of their own
 public class Snake {
-    private Coordinate head;
-    private Move headDirection;
-    private Move lastHeadDirection;
-    private ArrayDeque<Coordinate> tail;
-    private int length;
-    private final SnakeId id;
-    private boolean dead;
-    private String name;
-    private final Autopilot autopilot;
+    // returned by `step` if the snake did not release any site
+    public static final int NO_SITE = Integer.MIN_VALUE;
+
+    private final SnakeStore store;
+    private int slot;
+    // the id of a removed snake, whose view is detached from the store, see `detach`
+    private SnakeId removedId;
+    private final Tail tail;
 
     public Coordinate getHead() {
-        return head;
+        return Coordinate.unpack(store.head(live()));
+    }
+
+    // packed site of the head, see `Coordinate.pack`
+    public int headSite() {
+        return store.head(live());
     }
 
     public Move getHeadDirection() {
-        return headDirection;
+        return store.direction(live());
     }
 
     public Move getLastHeadDirection() {
-        return lastHeadDirection;
+        return store.lastDirection(live());
     }
 
     public boolean isDead() {
-        return dead;
+        return store.isDead(live());
     }
 
     public int getLength() {
-        return length;
+        return store.length(live());
     }
 
     public SnakeId getId() {
-        return id;
+        return slot < 0 ? removedId : store.id(slot);
     }
 
     public int getIdx() {
-        return id.getIdx();
+        return getId().getIdx();
     }
 
     public String getName() {
-        return name;
+        return store.name(live());
     }
 
     public void setName(String name) {
-        this.name = name;
+        store.setName(live(), name);
     }
 
-    public ArrayDeque<Coordinate> getTail() {
-        return tail;
+    public List<Coordinate> getTail() {
+        return tail.toList();
     }
 
     public List<Coordinate> getTailAsList() {
-        return new ArrayList<>(getTail());
+        return getTail();
+    }
+
+    // direct access to the packed sites of the tail, does not copy anything
+    public Tail tailSites() {
+        return tail;
+    }
+
+    // slot of this snake in its store
+    int slot() {
+        return live();
+    }
+
+    // the store compacts its slots, when snakes are removed
+    void moveTo(int slot) {
+        this.slot = slot;
+    }
+
+    // the snake was removed, its slot belongs to another snake now, so references held elsewhere must not use it
+    void detach() {
+        removedId = store.id(slot);
+        slot = -1;
+    }
+
+    private int live() {
+        if (slot < 0) {
+            throw new IllegalStateException("snake " + removedId + " was removed from its game");
+        }
+        return slot;
+    }
+
+    // view on an existing slot
+    Snake(SnakeStore store, int slot) {
+        this.store = store;
+        this.tail = new Tail(store, this);
+        this.slot = slot;
+    }
+
+    Snake(SnakeStore store, SnakeId id, Coordinate start, Move direction, Autopilot autopilot, Random random) {
+        this.store = store;
+        this.tail = new Tail(store, this);
+        this.slot = store.add(this, id, start, direction, autopilot, random);
     }
 
     public Snake(SnakeId id, Coordinate start, Move direction, Autopilot autopilot) {
-        lastHeadDirection = direction;
-        headDirection = direction;
-        head = start;
-        tail = new ArrayDeque<>();
-        length = 2;
-        this.id = id;
-        dead = false;
-        name = Optional.ofNullable(autopilot).map(Autopilot::generateName).orElseGet(() -> "Anon " + (id.getIdx() + 1));
-        this.autopilot = autopilot;
+        this(new SnakeStore(1), id, start, direction, autopilot, new ForkableRandom());
     }
 
     public Snake(SnakeId id, Coordinate start){
@@ -87,38 +127,48 @@ public class Snake {
         this(id, start, Move.random(random), autopilot);
     }
 
+    // draws the new direction from the stream of this snake, such that seeded games stay deterministic
     public void reset(Coordinate start) {
-        Move dir = Move.random();
-        lastHeadDirection = dir;
-        headDirection = dir;
-        head = start;
-        tail = new ArrayDeque<>();
-        length = 2;
-        dead = false;
+        store.reset(live(), start, Move.random(random()));
     }
 
     public void kill() {
-        dead = true;
+        store.kill(live());
+    }
+
+    // random stream of this snake, which is derived from the seed of its game, see `InputLog`
+    public Random random() {
+        return store.random(live());
     }
 
     public Optional<Autopilot> ai() {
-        return Optional.ofNullable(autopilot);
+        return Optional.ofNullable(autopilot());
+    }
+
+    // same as `ai`, but without wrapping, for the tick
+    Autopilot autopilot() {
+        return store.autopilot(live());
     }
 
     public void incrementLength() {
-        this.length += 1;
+        store.incrementLength(live());
+    }
+
+    // number of segments the snake grew since the last call
+    public int takeGrowth() {
+        return store.takeGrowth(live());
     }
 
     public void setHead(Coordinate head) {
-        this.head = head;
+        store.setHead(live(), head.toPacked());
     }
 
     public void setHeadDirection(Move headDirection) {
-        this.headDirection = headDirection;
+        store.setDirection(live(), headDirection);
     }
 
     public void setLastHeadDirection(Move lastHeadDirection) {
-        this.lastHeadDirection = lastHeadDirection;
+        store.setLastDirection(live(), lastHeadDirection);
     }
 
     public void turnRelative(MoveRelative rmove) {
@@ -126,7 +176,7 @@ public class Snake {
             return;
         }
 
-        headDirection = rmove.toMove(this.getLastHeadDirection());
+        setHeadDirection(rmove.toMove(this.getLastHeadDirection()));
     }
 
     public void turnAbsolute(Move direction) {
@@ -134,22 +184,13 @@ public class Snake {
             return;
         }
 
-        headDirection = direction;
+        setHeadDirection(direction);
     }
 
-    public Coordinate step() {
-        Coordinate offset = getHeadDirection().toCoord();
-        lastHeadDirection = headDirection;
-
-        tail.add(head.copy());
-
-        while (tail.size() >= length + 1) {
-            tail.remove();
-        }
-
-        head = head.add(offset);
-
-        return head;
+    // move the head one site into the current direction, the old head becomes part of the tail
+    // returns the packed site which the end of the tail left, or `NO_SITE` if the snake is still growing
+    public int step() {
+        return store.step(live());
     }
 
     @Override
@@ -157,11 +198,11 @@ public class Snake {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Snake snake = (Snake) o;
-        return id.equals(snake.id);
+        return getId().equals(snake.getId());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id);
+        return Objects.hash(getId());
     }
 }
@@ -1,7 +1,5 @@
 package me.schawe.multijsnake.snake;
 
-import java.util.Objects;
-
 public class SnakeId {
     private final String id;
     private final int idx;
@@ -37,6 +35,7 @@ public class SnakeId {
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, idx);
+        // same as `Objects.hash(id, idx)`, without boxing into a varargs array, since the tick looks up snakes
+        return 31 * (31 + id.hashCode()) + idx;
     }
 }
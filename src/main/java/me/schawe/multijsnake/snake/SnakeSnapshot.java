@@ -0,0 +1,19 @@
+package me.schawe.multijsnake.snake;
+
+import java.util.Collections;
+import java.util.List;
+
+/// immutable copy of the parts of a snake which are shown to the clients, see `GameSnapshot`
+public record SnakeSnapshot(int idx, String name, Coordinate head, Move headDirection, List<Coordinate> tail, int length, boolean dead) {
+    public static SnakeSnapshot of(Snake snake) {
+        return new SnakeSnapshot(
+                snake.getIdx(),
+                snake.getName(),
+                snake.getHead(),
+                snake.getHeadDirection(),
+                Collections.unmodifiableList(snake.getTail()),
+                snake.getLength(),
+                snake.isDead()
+        );
+    }
+}
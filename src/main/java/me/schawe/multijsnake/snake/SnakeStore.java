@@ -0,0 +1,461 @@
+package me.schawe.multijsnake.snake;
+
+import me.schawe.multijsnake.snake.ai.Autopilot;
+import me.schawe.multijsnake.util.ForkableRandom;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/// state of all snakes of a game as parallel arrays, indexed by the slot of the snake
+/// such that the tick iterates linearly over primitive arrays, even for arenas with thousands of snakes
+/// `Snake` is a thin view on one slot, which keeps working for all existing callers
+///
+/// the tails are ring buffers of packed sites (see `Coordinate.pack`) inside of one shared pool
+/// every tail owns a region of `tailCapacity` sites starting at `tailOffset`, its capacity is a power of two
+/// a tail which outgrows its region moves to the end of the pool, the abandoned regions are reclaimed by `compact`
+public class SnakeStore {
+    private static final int INITIAL_TAIL_CAPACITY = 16;
+    // `values()` copies the array on every call
+    private static final Move[] MOVES = Move.values();
+
+    private int size;
+
+    private SnakeId[] ids;
+    private String[] names;
+    private Autopilot[] autopilots;
+    // random stream of every snake, e.g., for its autopilot
+    private Random[] randoms;
+    private Snake[] views;
+
+    private int[] head;
+    private byte[] direction;
+    private byte[] lastDirection;
+    private int[] length;
+    private int[] growth;
+    private boolean[] dead;
+
+    // aggregates over all slots, maintained by every change, such that the checks of the tick are O(1)
+    private int totalLength;
+    private int alive;
+    private int humans;
+
+    private int[] tailPool;
+    private int poolEnd;
+    private int[] tailOffset;
+    private int[] tailCapacity;
+    private int[] tailStart;
+    private int[] tailSize;
+    // polynomial hash of the tail and `B^tailSize`, see `Zobrist`
+    private long[] tailHash;
+    private long[] tailPower;
+
+    public SnakeStore(int capacity) {
+        capacity = Math.max(1, capacity);
+        size = 0;
+        totalLength = 0;
+        alive = 0;
+        humans = 0;
+        ids = new SnakeId[capacity];
+        names = new String[capacity];
+        autopilots = new Autopilot[capacity];
+        randoms = new Random[capacity];
+        views = new Snake[capacity];
+        head = new int[capacity];
+        direction = new byte[capacity];
+        lastDirection = new byte[capacity];
+        length = new int[capacity];
+        growth = new int[capacity];
+        dead = new boolean[capacity];
+        tailPool = new int[capacity * INITIAL_TAIL_CAPACITY];
+        poolEnd = 0;
+        tailOffset = new int[capacity];
+        tailCapacity = new int[capacity];
+        tailStart = new int[capacity];
+        tailSize = new int[capacity];
+        tailHash = new long[capacity];
+        tailPower = new long[capacity];
+    }
+
+    // independent copy of all snakes with new views, the autopilots are shared
+    public SnakeStore(SnakeStore other) {
+        this(other, false);
+    }
+
+    // with `shareRandoms` the copy draws from the random streams of the original snakes, such that autopilots
+    // deciding on a frozen copy (see `Collisions`) draw exactly what they would draw on the original
+    SnakeStore(SnakeStore other, boolean shareRandoms) {
+        size = other.size;
+        totalLength = other.totalLength;
+        alive = other.alive;
+        humans = other.humans;
+        ids = other.ids.clone();
+        names = other.names.clone();
+        autopilots = other.autopilots.clone();
+        randoms = new Random[ids.length];
+        for (int slot = 0; slot < size; ++slot) {
+            randoms[slot] = shareRandoms ? other.randoms[slot] : ForkableRandom.fork(other.randoms[slot]);
+        }
+        head = other.head.clone();
+        direction = other.direction.clone();
+        lastDirection = other.lastDirection.clone();
+        length = other.length.clone();
+        growth = other.growth.clone();
+        dead = other.dead.clone();
+        tailPool = other.tailPool.clone();
+        poolEnd = other.poolEnd;
+        tailOffset = other.tailOffset.clone();
+        tailCapacity = other.tailCapacity.clone();
+        tailStart = other.tailStart.clone();
+        tailSize = other.tailSize.clone();
+        tailHash = other.tailHash.clone();
+        tailPower = other.tailPower.clone();
+        views = new Snake[ids.length];
+        for (int slot = 0; slot < size; ++slot) {
+            views[slot] = new Snake(this, slot);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Snake view(int slot) {
+        return views[slot];
+    }
+
+    // number of sites all snakes will occupy, once they finished growing, i.e., lengths plus heads
+    public int occupiedSites() {
+        return totalLength + size;
+    }
+
+    public int alive() {
+        return alive;
+    }
+
+    // number of snakes without autopilot
+    public int humans() {
+        return humans;
+    }
+
+    // called by the constructors of `Snake`, returns the slot of the new snake
+    int add(Snake view, SnakeId id, Coordinate start, Move dir, Autopilot autopilot, Random random) {
+        if (size == ids.length) {
+            grow(2 * size);
+        }
+        int slot = size;
+        size += 1;
+
+        ids[slot] = id;
+        autopilots[slot] = autopilot;
+        randoms[slot] = random;
+        names[slot] = autopilot != null ? autopilot.generateName() : "Anon " + (id.getIdx() + 1);
+        views[slot] = view;
+        tailOffset[slot] = allocateTail(INITIAL_TAIL_CAPACITY);
+        tailCapacity[slot] = INITIAL_TAIL_CAPACITY;
+        // the slot might hold stale values of a removed snake, `reset` counts the new one from zero
+        length[slot] = 0;
+        dead[slot] = true;
+        if (autopilot == null) {
+            humans += 1;
+        }
+        reset(slot, start, dir);
+        return slot;
+    }
+
+    // removes the snake, the later snakes move up one slot, such that the order is kept
+    // the view of the removed snake is detached, such that it fails instead of reading its successor
+    void remove(int slot) {
+        views[slot].detach();
+        totalLength -= length[slot];
+        if (!dead[slot]) {
+            alive -= 1;
+        }
+        if (autopilots[slot] == null) {
+            humans -= 1;
+        }
+
+        int moved = size - slot - 1;
+        System.arraycopy(ids, slot + 1, ids, slot, moved);
+        System.arraycopy(names, slot + 1, names, slot, moved);
+        System.arraycopy(autopilots, slot + 1, autopilots, slot, moved);
+        System.arraycopy(randoms, slot + 1, randoms, slot, moved);
+        System.arraycopy(views, slot + 1, views, slot, moved);
+        System.arraycopy(head, slot + 1, head, slot, moved);
+        System.arraycopy(direction, slot + 1, direction, slot, moved);
+        System.arraycopy(lastDirection, slot + 1, lastDirection, slot, moved);
+        System.arraycopy(length, slot + 1, length, slot, moved);
+        System.arraycopy(growth, slot + 1, growth, slot, moved);
+        System.arraycopy(dead, slot + 1, dead, slot, moved);
+        System.arraycopy(tailOffset, slot + 1, tailOffset, slot, moved);
+        System.arraycopy(tailCapacity, slot + 1, tailCapacity, slot, moved);
+        System.arraycopy(tailStart, slot + 1, tailStart, slot, moved);
+        System.arraycopy(tailSize, slot + 1, tailSize, slot, moved);
+        System.arraycopy(tailHash, slot + 1, tailHash, slot, moved);
+        System.arraycopy(tailPower, slot + 1, tailPower, slot, moved);
+        size -= 1;
+        ids[size] = null;
+        names[size] = null;
+        autopilots[size] = null;
+        randoms[size] = null;
+        views[size] = null;
+        for (int i = slot; i < size; ++i) {
+            views[i].moveTo(i);
+        }
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        names = Arrays.copyOf(names, capacity);
+        autopilots = Arrays.copyOf(autopilots, capacity);
+        randoms = Arrays.copyOf(randoms, capacity);
+        views = Arrays.copyOf(views, capacity);
+        head = Arrays.copyOf(head, capacity);
+        direction = Arrays.copyOf(direction, capacity);
+        lastDirection = Arrays.copyOf(lastDirection, capacity);
+        length = Arrays.copyOf(length, capacity);
+        growth = Arrays.copyOf(growth, capacity);
+        dead = Arrays.copyOf(dead, capacity);
+        tailOffset = Arrays.copyOf(tailOffset, capacity);
+        tailCapacity = Arrays.copyOf(tailCapacity, capacity);
+        tailStart = Arrays.copyOf(tailStart, capacity);
+        tailSize = Arrays.copyOf(tailSize, capacity);
+        tailHash = Arrays.copyOf(tailHash, capacity);
+        tailPower = Arrays.copyOf(tailPower, capacity);
+    }
+
+    public SnakeId id(int slot) {
+        return ids[slot];
+    }
+
+    public String name(int slot) {
+        return names[slot];
+    }
+
+    public void setName(int slot, String name) {
+        names[slot] = name;
+    }
+
+    public Autopilot autopilot(int slot) {
+        return autopilots[slot];
+    }
+
+    // only replaces one autopilot with another, humans stay humans
+    void setAutopilot(int slot, Autopilot autopilot) {
+        if (autopilots[slot] != null && autopilot != null) {
+            autopilots[slot] = autopilot;
+        }
+    }
+
+    public Random random(int slot) {
+        return randoms[slot];
+    }
+
+    // whether any other snake has its head on this packed site
+    boolean isOtherHead(int site, int slot) {
+        for (int other = 0; other < size; ++other) {
+            if (other != slot && head[other] == site) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int head(int slot) {
+        return head[slot];
+    }
+
+    public void setHead(int slot, int site) {
+        head[slot] = site;
+    }
+
+    public Move direction(int slot) {
+        return MOVES[direction[slot]];
+    }
+
+    public void setDirection(int slot, Move move) {
+        direction[slot] = (byte) move.ordinal();
+    }
+
+    public Move lastDirection(int slot) {
+        return MOVES[lastDirection[slot]];
+    }
+
+    public void setLastDirection(int slot, Move move) {
+        lastDirection[slot] = (byte) move.ordinal();
+    }
+
+    public int length(int slot) {
+        return length[slot];
+    }
+
+    public boolean isDead(int slot) {
+        return dead[slot];
+    }
+
+    public void kill(int slot) {
+        if (!dead[slot]) {
+            alive -= 1;
+        }
+        dead[slot] = true;
+    }
+
+    public void incrementLength(int slot) {
+        totalLength += 1;
+        length[slot] += 1;
+        growth[slot] += 1;
+    }
+
+    // number of segments the snake grew since the last call
+    public int takeGrowth(int slot) {
+        int g = growth[slot];
+        growth[slot] = 0;
+        return g;
+    }
+
+    public void reset(int slot, Coordinate start, Move dir) {
+        setDirection(slot, dir);
+        setLastDirection(slot, dir);
+        head[slot] = start.toPacked();
+        totalLength += 2 - length[slot];
+        length[slot] = 2;
+        growth[slot] = 0;
+        if (dead[slot]) {
+            alive += 1;
+        }
+        dead[slot] = false;
+        // keeps the region of the tail, such that a reset snake does not need to allocate anything
+        tailStart[slot] = 0;
+        tailSize[slot] = 0;
+        tailHash[slot] = 0;
+        tailPower[slot] = 1;
+    }
+
+    public int tailSize(int slot) {
+        return tailSize[slot];
+    }
+
+    // the i-th packed site of the tail, counted from the end of the tail
+    public int tailSite(int slot, int i) {
+        if (i < 0 || i >= tailSize[slot]) {
+            throw new IndexOutOfBoundsException(i);
+        }
+        return tailPool[tailOffset[slot] + ((tailStart[slot] + i) & (tailCapacity[slot] - 1))];
+    }
+
+    // move the head one site into the current direction, the old head becomes part of the tail
+    // returns the packed site which the end of the tail left, or `Snake.NO_SITE` if the snake is still growing
+    public int step(int slot) {
+        int released = retract(slot);
+        advanceHead(slot);
+        return released;
+    }
+
+    // first half of `step`: the end of the tail leaves its site, unless the snake is still growing
+    // the tick retracts all tails before any head moves, such that heads can follow any tail end
+    public int retract(int slot) {
+        // the head will become part of the tail, so there is only room for `length - 1` old sites
+        int released = Snake.NO_SITE;
+        while (tailSize[slot] >= length[slot]) {
+            released = tailPool[tailOffset[slot] + tailStart[slot]];
+            tailStart[slot] = (tailStart[slot] + 1) & (tailCapacity[slot] - 1);
+            tailSize[slot] -= 1;
+            tailHash[slot] = (tailHash[slot] - Zobrist.site(released)) * Zobrist.B_INVERSE;
+            tailPower[slot] *= Zobrist.B_INVERSE;
+        }
+        return released;
+    }
+
+    // second half of `step`: the old head becomes part of the tail and the head moves into the current direction
+    public void advanceHead(int slot) {
+        lastDirection[slot] = direction[slot];
+
+        if (tailSize[slot] == tailCapacity[slot]) {
+            growTail(slot);
+        }
+        tailPool[tailOffset[slot] + ((tailStart[slot] + tailSize[slot]) & (tailCapacity[slot] - 1))] = head[slot];
+        tailSize[slot] += 1;
+        tailHash[slot] += Zobrist.site(head[slot]) * tailPower[slot];
+        tailPower[slot] *= Zobrist.B;
+
+        Move move = MOVES[direction[slot]];
+        head[slot] = Coordinate.pack(Coordinate.x(head[slot]) + move.dx(), Coordinate.y(head[slot]) + move.dy());
+    }
+
+    // hash of the snake in this slot, see `Zobrist`
+    public long hash(int slot) {
+        return Zobrist.snake(tailHash[slot], head[slot], MOVES[direction[slot]], length[slot], dead[slot]);
+    }
+
+    // sum of the hashes of all snakes, O(number of snakes), since every slot keeps the hash of its tail up to date
+    public long hash() {
+        long sum = 0;
+        for (int slot = 0; slot < size; ++slot) {
+            sum += hash(slot);
+        }
+        return sum;
+    }
+
+    // the head stays occupied for this tick and `length` more ticks as part of the tail
+    void occupyHead(int slot, Board board) {
+        board.occupy(Coordinate.x(head[slot]), Coordinate.y(head[slot]), length[slot] + 1);
+    }
+
+    // a growing snake keeps all of its sites for `turns` more ticks
+    void extend(int slot, Board board, int turns) {
+        board.extend(Coordinate.x(head[slot]), Coordinate.y(head[slot]), turns);
+        for (int i = 0; i < tailSize[slot]; ++i) {
+            int site = tailSite(slot, i);
+            board.extend(Coordinate.x(site), Coordinate.y(site), turns);
+        }
+    }
+
+    // the sites of a dead snake stay occupied until the next reset
+    void freeze(int slot, Board board) {
+        board.freeze(Coordinate.x(head[slot]), Coordinate.y(head[slot]));
+        for (int i = 0; i < tailSize[slot]; ++i) {
+            int site = tailSite(slot, i);
+            board.freeze(Coordinate.x(site), Coordinate.y(site));
+        }
+    }
+
+    // reserve a region at the end of the pool, returns its offset
+    private int allocateTail(int capacity) {
+        if (poolEnd + capacity > tailPool.length) {
+            tailPool = Arrays.copyOf(tailPool, Math.max(2 * tailPool.length, poolEnd + capacity));
+        }
+        int offset = poolEnd;
+        poolEnd += capacity;
+        return offset;
+    }
+
+    private void growTail(int slot) {
+        int capacity = 2 * tailCapacity[slot];
+        int offset = allocateTail(capacity);
+        for (int i = 0; i < tailSize[slot]; ++i) {
+            tailPool[offset + i] = tailSite(slot, i);
+        }
+        tailOffset[slot] = offset;
+        tailCapacity[slot] = capacity;
+        tailStart[slot] = 0;
+    }
+
+    // move all tails next to each other at the start of the pool, dropping the regions abandoned by growing tails
+    public void compact() {
+        int total = 0;
+        for (int slot = 0; slot < size; ++slot) {
+            total += tailCapacity[slot];
+        }
+        int[] pool = new int[Math.max(total, INITIAL_TAIL_CAPACITY)];
+        int offset = 0;
+        for (int slot = 0; slot < size; ++slot) {
+            for (int i = 0; i < tailSize[slot]; ++i) {
+                pool[offset + i] = tailSite(slot, i);
+            }
+            tailOffset[slot] = offset;
+            tailStart[slot] = 0;
+            offset += tailCapacity[slot];
+        }
+        tailPool = pool;
+        poolEnd = offset;
+    }
+}
@@ -0,0 +1,56 @@
+package me.schawe.multijsnake.snake;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/// tail of a snake, a view on its ring buffer of packed sites (see `Coordinate.pack`) in the `SnakeStore`
+/// the first site is the end of the tail, the last one is the site right behind the head
+/// the engine reads the packed sites directly via `get`, everyone else can iterate over coordinates
+public class Tail implements Iterable<Coordinate> {
+    private final SnakeStore store;
+    private final Snake snake;
+
+    Tail(SnakeStore store, Snake snake) {
+        this.store = store;
+        this.snake = snake;
+    }
+
+    public int size() {
+        return store.tailSize(snake.slot());
+    }
+
+    // the i-th packed site, counted from the end of the tail
+    public int get(int i) {
+        return store.tailSite(snake.slot(), i);
+    }
+
+    public List<Coordinate> toList() {
+        List<Coordinate> list = new ArrayList<>(size());
+        for(Coordinate site : this) {
+            list.add(site);
+        }
+        return list;
+    }
+
+    @Override
+    public Iterator<Coordinate> iterator() {
+        return new Iterator<>() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < size();
+            }
+
+            @Override
+            public Coordinate next() {
+                if(!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return Coordinate.unpack(get(i++));
+            }
+        };
+    }
+}
@@ -0,0 +1,108 @@
+package me.schawe.multijsnake.snake;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/// geometry of a field of a given size: the sites are numbered row by row, `index(x, y) = y * width + x`
+/// the neighbors of every site in all four directions are precomputed, such that neighbor queries are a single array read
+/// `WALL` marks neighbors outside of the field, the neighbor of `WALL` is `WALL` again
+///
+/// topologies are immutable and shared by all games of the same size, see `of`
+/// fields with more than `MAX_TABLE_SITES` sites compute the neighbors arithmetically instead of storing a table
+public final class Topology {
+    public static final int WALL = -1;
+    static final int MAX_TABLE_SITES = 1 << 20;
+    // the sizes are chosen by the clients, so the cache must not grow without limit
+    private static final int MAX_CACHED = 64;
+    private static final Map<Long, Topology> CACHE = new ConcurrentHashMap<>();
+    private static final Move[] MOVES = Move.values();
+
+    private final int width;
+    private final int height;
+    // neighbor of site `idx` in direction `move` at `4 * idx + move.ordinal()`, null for huge fields
+    private final int[] neighbors;
+
+    private Topology(int width, int height) {
+        this.width = width;
+        this.height = height;
+        if ((long) width * height <= MAX_TABLE_SITES) {
+            neighbors = new int[4 * width * height];
+            for (int idx = 0; idx < width * height; ++idx) {
+                for (Move move : MOVES) {
+                    neighbors[4 * idx + move.ordinal()] = computeNeighbor(idx, move);
+                }
+            }
+        } else {
+            neighbors = null;
+        }
+    }
+
+    public static Topology of(int width, int height) {
+        long key = (long) width << 32 | (height & 0xFFFFFFFFL);
+        Topology topology = CACHE.get(key);
+        if (topology != null) {
+            return topology;
+        }
+        topology = new Topology(width, height);
+        if (CACHE.size() < MAX_CACHED) {
+            Topology previous = CACHE.putIfAbsent(key, topology);
+            if (previous != null) {
+                return previous;
+            }
+        }
+        return topology;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public int sites() {
+        return width * height;
+    }
+
+    public boolean contains(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    // index of the site or `WALL`
+    public int index(int x, int y) {
+        return contains(x, y) ? y * width + x : WALL;
+    }
+
+    // index of a packed site (see `Coordinate.pack`) or `WALL`
+    public int indexOfPacked(int packed) {
+        return index(Coordinate.x(packed), Coordinate.y(packed));
+    }
+
+    public int x(int idx) {
+        return idx % width;
+    }
+
+    public int y(int idx) {
+        return idx / width;
+    }
+
+    public int neighbor(int idx, Move move) {
+        if (idx == WALL) {
+            return WALL;
+        }
+        if (neighbors == null) {
+            return computeNeighbor(idx, move);
+        }
+        return neighbors[4 * idx + move.ordinal()];
+    }
+
+    // neighbor after turning relative to the current heading
+    public int neighbor(int idx, Move heading, MoveRelative turn) {
+        return neighbor(idx, turn.toMove(heading));
+    }
+
+    private int computeNeighbor(int idx, Move move) {
+        return index(x(idx) + move.dx(), y(idx) + move.dy());
+    }
+}
@@ -12,8 +12,10 @@ public class TrainingState {
         this.gameState = gameState;
     }
 
-    private int danger(Coordinate c) {
-        if(gameState.isOccupied(c) || gameState.isWall(c)) {
+    // site given as index of the topology, `Topology.WALL` is dangerous as well
+    private int danger(int idx) {
+        Topology topology = gameState.topology();
+        if(idx == Topology.WALL || gameState.occupancy().isOccupied(topology.x(idx), topology.y(idx))) {
             return 1;
         }
         return 0;
@@ -62,28 +64,31 @@ public class TrainingState {
             state.add(0);
         }
 
-        Coordinate straight = snake.getHeadDirection().toCoord();
-        Coordinate left = snake.getHeadDirection().rLeft().toCoord();
-        Coordinate right = snake.getHeadDirection().rRight().toCoord();
-        Coordinate back = snake.getHeadDirection().back().toCoord();
+        Move straight = snake.getHeadDirection();
+        Move left = straight.rLeft();
+        Move right = straight.rRight();
+        Move back = straight.back();
+        Topology t = gameState.topology();
+        int head = t.indexOfPacked(snake.headSite());
 
         // first neighbors
-        state.add(danger(snake.getHead().add(left)));
-        state.add(danger(snake.getHead().add(straight)));
-        state.add(danger(snake.getHead().add(right)));
+        state.add(danger(t.neighbor(head, left)));
+        state.add(danger(t.neighbor(head, straight)));
+        state.add(danger(t.neighbor(head, right)));
         // omit back, its always occupied
 
         // second neighbors
-        state.add(danger(snake.getHead().add(back).add(left)));
-        state.add(danger(snake.getHead().add(left).add(straight)));
-        state.add(danger(snake.getHead().add(straight).add(right)));
-        state.add(danger(snake.getHead().add(right).add(back)));
+        // a site outside of the field has only neighbors outside of the field in all directions used here
+        state.add(danger(t.neighbor(t.neighbor(head, back), left)));
+        state.add(danger(t.neighbor(t.neighbor(head, left), straight)));
+        state.add(danger(t.neighbor(t.neighbor(head, straight), right)));
+        state.add(danger(t.neighbor(t.neighbor(head, right), back)));
 
         // third neighbors
-        state.add(danger(snake.getHead().add(left).add(left)));
-        state.add(danger(snake.getHead().add(straight).add(straight)));
-        state.add(danger(snake.getHead().add(right).add(right)));
-        state.add(danger(snake.getHead().add(back).add(back)));
+        state.add(danger(t.neighbor(t.neighbor(head, left), left)));
+        state.add(danger(t.neighbor(t.neighbor(head, straight), straight)));
+        state.add(danger(t.neighbor(t.neighbor(head, right), right)));
+        state.add(danger(t.neighbor(t.neighbor(head, back), back)));
 
         return state;
     }
@@ -92,7 +97,7 @@ public class TrainingState {
     /// here we take bitmap of the field with multiple layers:
     /// first layer: 1: food, else 0
     /// second layer: 1: head of the current snake, else 0
-    /// third layer: number of turns the site will be occupied by the tail of a snake
+    /// third layer: number of turns the site will be occupied by a snake, as tracked by the occupancy of the game
     /// this is inspired by https://towardsdatascience.com/learning-to-play-snake-at-1-million-fps-4aae8d36d2f1
     public int[][][] bitmap(SnakeId snakeId) {
         Snake snake = gameState.getSnake(snakeId);
@@ -105,14 +110,13 @@ public class TrainingState {
             state[snake.getHead().getX()][snake.getHead().getY()][1] = 1;
         }
 
-        for(Snake s : gameState.getSnakeSet()) {
-            int ctr = 1;
-            for(Coordinate site : s.getTail()) {
-                state[site.getX()][site.getY()][2] = ctr;
-                ctr += 1;
-            }
-            if(!gameState.isWall(s.getHead())) {
-                state[s.getHead().getX()][s.getHead().getY()][2] = ctr;
+        OccupancyView occupancy = gameState.occupancy();
+        int width = occupancy.width();
+        int[] remaining = new int[width * occupancy.height()];
+        occupancy.remainingTurns(remaining);
+        for(int x = 0; x < width; ++x) {
+            for(int y = 0; y < occupancy.height(); ++y) {
+                state[x][y][2] = remaining[y * width + x];
             }
         }
 
@@ -124,6 +128,18 @@ public class TrainingState {
         return state;
     }
 
+    /// which directions are blocked for the heads of the given snakes, all computed at once
+    /// one mask per snake with the bits given by `FieldKernels.blockedBit`
+    public int[] dangerMasks(List<SnakeId> snakeIds) {
+        int[] heads = new int[snakeIds.size()];
+        for(int i = 0; i < heads.length; ++i) {
+            heads[i] = gameState.getSnake(snakeIds.get(i)).headSite();
+        }
+        int[] masks = new int[heads.length];
+        gameState.occupancy().blockedNeighbors(heads, heads.length, masks);
+        return masks;
+    }
+
     public static Move relativeAction2Move(int action, Move lastHeadDirection) {
         return switch (action) {
             case 0 -> lastHeadDirection.rLeft();
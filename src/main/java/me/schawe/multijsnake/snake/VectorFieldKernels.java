@@ -0,0 +1,160 @@
+package me.schawe.multijsnake.snake;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/// `FieldKernels` on top of the incubating Vector API, only loaded by `FieldKernels.get` if the module is present
+/// the lanes of the flood fill are rows of the field, such that one vector step grows the reachable set of several rows
+class VectorFieldKernels implements FieldKernels {
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+
+    @Override
+    public boolean isVectorized() {
+        return true;
+    }
+
+    @Override
+    public void remainingTurns(int[] expiry, int tick, int[] out) {
+        int bound = INTS.loopBound(expiry.length);
+        int i = 0;
+        for (; i < bound; i += INTS.length()) {
+            IntVector e = IntVector.fromArray(INTS, expiry, i);
+            VectorMask<Integer> frozen = e.compare(VectorOperators.LT, 0);
+            e.sub(tick).max(0).blend(e.neg(), frozen).intoArray(out, i);
+        }
+        ScalarFieldKernels.remainingTurns(expiry, tick, out, i);
+    }
+
+    // the rows are padded with one empty row at both ends, such that every row has an upper and a lower neighbor
+    @Override
+    public int reachableFreeSites(long[] occupied, long fieldMask, int x, int y) {
+        int height = occupied.length;
+        long[] free = new long[height + 2];
+        long[] reach = new long[height + 2];
+        for (int i = 0; i < height; ++i) {
+            free[i + 1] = ~occupied[i] & fieldMask;
+        }
+        // the start may be occupied, e.g., by the head of the snake asking
+        free[y + 1] |= 1L << x;
+        reach[y + 1] = 1L << x;
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int i = 1;
+            for (; i + LONGS.length() <= height + 1; i += LONGS.length()) {
+                changed |= sweep(free, reach, i);
+            }
+            for (; i <= height; ++i) {
+                changed |= sweepRow(free, reach, i);
+            }
+        }
+
+        int count = 0;
+        for (int i = 0; i < height; ++i) {
+            count += Long.bitCount(reach[i + 1] & ~occupied[i]);
+        }
+        return count;
+    }
+
+    private static boolean sweep(long[] free, long[] reach, int i) {
+        LongVector old = LongVector.fromArray(LONGS, reach, i);
+        LongVector f = LongVector.fromArray(LONGS, free, i);
+        LongVector r = old
+                .or(LongVector.fromArray(LONGS, reach, i - 1))
+                .or(LongVector.fromArray(LONGS, reach, i + 1))
+                .and(f);
+        // occluded fills to both sides fill the runs of free sites in log(64) steps
+        LongVector up = r;
+        LongVector down = r;
+        LongVector pUp = f;
+        LongVector pDown = f;
+        for (int shift = 1; shift < Long.SIZE; shift <<= 1) {
+            up = up.or(up.lanewise(VectorOperators.LSHL, shift).and(pUp));
+            down = down.or(down.lanewise(VectorOperators.LSHR, shift).and(pDown));
+            pUp = pUp.and(pUp.lanewise(VectorOperators.LSHL, shift));
+            pDown = pDown.and(pDown.lanewise(VectorOperators.LSHR, shift));
+        }
+        r = up.or(down);
+        r.intoArray(reach, i);
+        return !r.compare(VectorOperators.EQ, old).allTrue();
+    }
+
+    private static boolean sweepRow(long[] free, long[] reach, int i) {
+        long r = (reach[i] | reach[i - 1] | reach[i + 1]) & free[i];
+        long prev;
+        do {
+            prev = r;
+            r |= ((r << 1) | (r >>> 1)) & free[i];
+        } while (r != prev);
+        boolean changed = r != reach[i];
+        reach[i] = r;
+        return changed;
+    }
+
+    // gathers the rows above, at and below every head and shifts the bits of the neighbors into place
+    // heads outside of the field (of crashed snakes) are rare, they are left to the scalar loop
+    @Override
+    public void blockedNeighbors(long[] occupied, int width, int[] heads, int count, int[] masks) {
+        int height = occupied.length;
+        long outside = width == Long.SIZE ? 0 : -1L << width;
+        // walls are rows of occupied bits, as well as the bits right of the field
+        long[] padded = new long[height + 2];
+        padded[0] = -1L;
+        padded[height + 1] = -1L;
+        for (int i = 0; i < height; ++i) {
+            padded[i + 1] = occupied[i] | outside;
+        }
+
+        int lanes = LONGS.length();
+        int[] rows = new int[lanes];
+        long[] xs = new long[lanes];
+        long[] result = new long[lanes];
+        int i = 0;
+        for (; i + lanes <= count; i += lanes) {
+            if (!prepare(heads, i, lanes, width, height, rows, xs)) {
+                ScalarFieldKernels.blockedNeighbors(occupied, width, heads, masks, i, i + lanes);
+                continue;
+            }
+            LongVector x = LongVector.fromArray(LONGS, xs, 0);
+            LongVector above = LongVector.fromArray(LONGS, padded, -1, rows, 0);
+            LongVector at = LongVector.fromArray(LONGS, padded, 0, rows, 0);
+            LongVector below = LongVector.fromArray(LONGS, padded, 1, rows, 0);
+
+            LongVector left = at.lanewise(VectorOperators.LSHR, x.sub(1)).and(1)
+                    .blend(1, x.compare(VectorOperators.EQ, 0));
+            LongVector right = at.lanewise(VectorOperators.LSHR, x.add(1)).and(1)
+                    .blend(1, x.compare(VectorOperators.EQ, Long.SIZE - 1));
+            LongVector up = above.lanewise(VectorOperators.LSHR, x).and(1);
+            LongVector down = below.lanewise(VectorOperators.LSHR, x).and(1);
+
+            left.lanewise(VectorOperators.LSHL, Move.left.ordinal())
+                    .or(right.lanewise(VectorOperators.LSHL, Move.right.ordinal()))
+                    .or(up.lanewise(VectorOperators.LSHL, Move.up.ordinal()))
+                    .or(down.lanewise(VectorOperators.LSHL, Move.down.ordinal()))
+                    .intoArray(result, 0);
+            for (int lane = 0; lane < lanes; ++lane) {
+                masks[i + lane] = (int) result[lane];
+            }
+        }
+        ScalarFieldKernels.blockedNeighbors(occupied, width, heads, masks, i, count);
+    }
+
+    // padded row index and column of the heads of one vector, false if any of them is outside of the field
+    private static boolean prepare(int[] heads, int from, int lanes, int width, int height, int[] rows, long[] xs) {
+        for (int lane = 0; lane < lanes; ++lane) {
+            int x = Coordinate.x(heads[from + lane]);
+            int y = Coordinate.y(heads[from + lane]);
+            if (x < 0 || x >= width || y < 0 || y >= height) {
+                return false;
+            }
+            rows[lane] = y + 1;
+            xs[lane] = x;
+        }
+        return true;
+    }
+}
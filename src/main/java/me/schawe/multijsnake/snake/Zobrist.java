@@ -0,0 +1,51 @@
+package me.schawe.multijsnake.snake;
+
+/// keys for the 64-bit hashes of positions, see `GameState.hash` and `SearchState.hash`
+/// fields can be far too large for tables of random keys, so the keys of sites are derived by a mixing function
+///
+/// the sites of a tail are hashed as a polynomial `sum key(site_k) * B^k`, counted from the end of the tail,
+/// together with the length this encodes the remaining lifetime of every site of the body
+/// a step of a snake removes the end (subtract its key, divide by `B`) and appends the old head (add its key times `B^size`)
+/// which is O(1) and exactly invertible, since `B` is odd and therefore invertible modulo 2^64
+public final class Zobrist {
+    public static final long B = 0x9E3779B97F4A7C15L;
+    public static final long B_INVERSE = inverse(B);
+
+    private static final long SITE_SALT = 0x2545F4914F6CDD1DL;
+    private static final long HEAD_SALT = 0x5851F42D4C957F2DL;
+    private static final long FOOD_SALT = 0x14057B7EF767814FL;
+    private static final long SNAKE_SALT = 0x3C6EF372FE94F82AL;
+
+    private Zobrist() {}
+
+    // multiplicative inverse of an odd number modulo 2^64 by Newton's iteration, every step doubles the correct bits
+    static long inverse(long b) {
+        long x = b;
+        for (int i = 0; i < 5; ++i) {
+            x *= 2 - b * x;
+        }
+        return x;
+    }
+
+    // finalizer of SplitMix64
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // key of a packed site of a tail
+    public static long site(int site) {
+        return mix(site ^ SITE_SALT);
+    }
+
+    public static long food(int site) {
+        return mix(site ^ FOOD_SALT);
+    }
+
+    // contribution of one snake, the snakes are summed up, such that their order does not matter
+    public static long snake(long tail, int head, Move direction, int length, boolean dead) {
+        long flags = (long) length << 3 | (dead ? 1L << 2 : 0) | direction.ordinal();
+        return mix(tail + mix(head ^ HEAD_SALT) + mix(flags ^ SNAKE_SALT));
+    }
+}
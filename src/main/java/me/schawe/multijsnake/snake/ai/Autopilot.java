@@ -3,6 +3,7 @@ package me.schawe.multijsnake.snake.ai;
 import me.schawe.multijsnake.snake.GameState;
 import me.schawe.multijsnake.snake.Move;
 import me.schawe.multijsnake.snake.Snake;
+import me.schawe.multijsnake.snake.Topology;
 
 import java.util.Arrays;
 import java.util.List;
@@ -12,6 +13,11 @@ public interface Autopilot {
     String generateName();
     Move suggest(GameState gameState, Snake snake);
 
+    // cheap replacement, if the game cannot afford this autopilot anymore
+    default Autopilot degraded() {
+        return this;
+    }
+
     default List<Move> possibleMoves(GameState gameState, Snake snake) {
         Move[] allMoves = {Move.up, Move.down, Move.left, Move.right};
 
@@ -21,10 +27,12 @@ public interface Autopilot {
     }
 
     default boolean isSafeMove(GameState gameState, Snake snake, Move move) {
+        Topology topology = gameState.topology();
+        int next = topology.neighbor(topology.indexOfPacked(snake.headSite()), move);
         return !(
                 move.isOpposite(snake.getHeadDirection())
-                || gameState.isOccupied(move.toCoord().add(snake.getHead()))
-                || gameState.isWall(move.toCoord().add(snake.getHead()))
+                || next == Topology.WALL
+                || gameState.occupancy().isOccupied(topology.x(next), topology.y(next))
         );
     }
 }
@@ -34,7 +34,7 @@ public class GlobalDeepAutopilot extends KerasModelAutopilot {
         } else if(modelFunctional != null) {
             output = modelFunctional.output(input)[0];
         } else {
-            gameState.kill(snake.getId());
+            // the snake dies, see `Collisions`
             throw new RuntimeException("failed to load model `" + pathToModel + "`");
         }
 
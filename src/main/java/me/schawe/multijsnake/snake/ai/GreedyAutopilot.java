@@ -14,8 +14,8 @@ public class GreedyAutopilot implements Autopilot {
         vertical,
         diagonal;
 
-        public static Strategy random() {
-            double r = 3. * Math.random();
+        public static Strategy random(Random random) {
+            double r = 3. * random.nextDouble();
             if(r < 1) {
                 return Strategy.horizontal;
             } else if (r < 2) {
@@ -28,12 +28,14 @@ public class GreedyAutopilot implements Autopilot {
         }
     }
 
+    // only for the name, which does not influence the game
     private final Random random;
-    private final Strategy strategy;
+    // chosen from the random stream of the snake on its first move, such that seeded games are reproducible
+    private Strategy strategy;
 
     public GreedyAutopilot() {
         random = new Random();
-        strategy = Strategy.random();
+        strategy = null;
     }
 
     private Optional<Move> horizontalDirection(int sourceX, int targetX) {
@@ -81,6 +83,9 @@ public class GreedyAutopilot implements Autopilot {
 
     @Override
     public Move suggest(GameState gameState, Snake snake) {
+        if (strategy == null) {
+            strategy = Strategy.random(snake.random());
+        }
         Move bestMove = shortestWay(gameState, snake);
         if(isSafeMove(gameState, snake, bestMove)) {
             return bestMove;
@@ -89,7 +94,7 @@ public class GreedyAutopilot implements Autopilot {
             if (moves.size() <= 0) {
                 return snake.getHeadDirection();
             }
-            int r = random.nextInt(moves.size());
+            int r = snake.random().nextInt(moves.size());
             return moves.get(r);
         }
     }
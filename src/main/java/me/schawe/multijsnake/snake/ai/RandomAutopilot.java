@@ -12,10 +12,11 @@ public class RandomAutopilot implements Autopilot {
     @Override
     public Move suggest(GameState gameState, Snake snake) {
         List<Move> moves = possibleMoves(gameState, snake);
+        // the stream of the snake, such that seeded games are reproducible
+        Random random = snake.random();
         if(moves.isEmpty()) {
-            return Move.random();
+            return Move.random(random);
         } else {
-            Random random = new Random();
             int r = random.nextInt(moves.size());
             return moves.get(r);
         }
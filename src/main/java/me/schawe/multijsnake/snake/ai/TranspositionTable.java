@@ -0,0 +1,75 @@
+package me.schawe.multijsnake.snake.ai;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/// bounded cache of evaluations of positions, keyed by their hash (see `GameState.hash` and `SearchState.hash`)
+/// it is lock-free, such that autopilots of all games can share one table across ticks
+///
+/// every slot holds the value and `hash ^ value` in two separate longs, which are written without any lock
+/// a reader which sees one half of a concurrent write finds that they do not match and treats it as a miss
+/// new entries always replace the old entry of their slot, the table never grows
+public class TranspositionTable {
+    // returned by `probe` if the position is not in the table
+    public static final long MISS = Long.MIN_VALUE;
+    private static final int DEFAULT_CAPACITY = 1 << 20;
+
+    private final AtomicLongArray checks;
+    private final AtomicLongArray values;
+    private final int mask;
+
+    public TranspositionTable(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive, but is " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        checks = new AtomicLongArray(size);
+        values = new AtomicLongArray(size);
+        mask = size - 1;
+        // an empty slot must not look like an entry for the hash 0
+        clear();
+    }
+
+    // one table for all games, such that identical positions in different games are only evaluated once
+    public static TranspositionTable shared() {
+        return Shared.TABLE;
+    }
+
+    // only allocated once someone asks for it
+    private static class Shared {
+        static final TranspositionTable TABLE = new TranspositionTable(DEFAULT_CAPACITY);
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    private int index(long hash) {
+        // the low bits are used by many tables as bucket index, mix in the high bits as well
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    // the value stored for this hash or `MISS`
+    public long probe(long hash) {
+        int i = index(hash);
+        long value = values.get(i);
+        long check = checks.get(i);
+        if ((check ^ value) != hash || value == MISS) {
+            return MISS;
+        }
+        return value;
+    }
+
+    // `MISS` itself can not be stored
+    public void store(long hash, long value) {
+        int i = index(hash);
+        values.set(i, value);
+        checks.set(i, hash ^ value);
+    }
+
+    public void clear() {
+        for (int i = 0; i <= mask; ++i) {
+            values.set(i, MISS);
+            checks.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package me.schawe.multijsnake.util;
+
+import java.util.Random;
+
+/// drop-in replacement for `Random` with the very same sequence for the same seed, whose state can be copied
+/// `Random` hides its seed, so we keep our own copy of the linear congruential generator
+/// (gaussians are cached by `Random` itself and are not part of a copy)
+public class ForkableRandom extends Random {
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    // no initializer: `Random`'s constructor sets it via `setSeed` before the fields of this class would be initialized
+    private long state;
+
+    public ForkableRandom() {
+        super();
+    }
+
+    public ForkableRandom(long seed) {
+        super(seed);
+    }
+
+    public ForkableRandom copy() {
+        ForkableRandom copy = new ForkableRandom(0);
+        copy.state = state;
+        return copy;
+    }
+
+    // copy of any random, one without accessible state can not be copied, so we derive a new, reproducible stream
+    public static ForkableRandom fork(Random random) {
+        return random instanceof ForkableRandom forkable
+                ? forkable.copy()
+                : new ForkableRandom(random.nextLong());
+    }
+
+    // independent stream, seeded by this one
+    public ForkableRandom split() {
+        return new ForkableRandom(nextLong());
+    }
+
+    // a new stream derived from the state of a random, a `ForkableRandom` is not advanced by this
+    public static ForkableRandom derive(Random random) {
+        if (random instanceof ForkableRandom forkable) {
+            // finalizer of SplitMix64, such that the derived stream does not just replay the original one
+            long z = forkable.state;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return new ForkableRandom(z ^ (z >>> 31));
+        }
+        return new ForkableRandom(random.nextLong());
+    }
+
+    // the raw state of the generator, e.g., to restore it later with `setState`
+    public long getState() {
+        return state;
+    }
+
+    public void setState(long state) {
+        this.state = state;
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        super.setSeed(seed);
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    // not synchronized: a generator belongs to a single game, which is only advanced by a single thread
+    @Override
+    protected int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+}
@@ -7,7 +7,7 @@ import jpype.imports
 from jpype.types import *
 
 # Launch the JVM
-jpype.startJVM(classpath=['../../../target/classes'])
+jpype.startJVM('--add-modules=jdk.incubator.vector', classpath=['../../../target/classes'])
 from me.schawe.multijsnake.snake import GameState, TrainingState
 
 
@@ -6,6 +6,7 @@ import me.schawe.multijsnake.gamemanagement.player.PlayerId;
 import me.schawe.multijsnake.gamemanagement.player.PlayerInfo;
 import me.schawe.multijsnake.gamemanagement.websocket.WebSocketService;
 import me.schawe.multijsnake.snake.GameState;
+import me.schawe.multijsnake.snake.Move;
 import me.schawe.multijsnake.snake.Snake;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -70,6 +71,17 @@ public class GameServiceTest {
         assertTrue(actualMessage.contains(expectedMessage));
     }
 
+    @Test
+    public void newGameSizeTest() {
+        for(int[] size : new int[][] {{0, 10}, {10, -1}, {Short.MAX_VALUE + 1, 10}, {10, Integer.MAX_VALUE}}) {
+            Exception exception = assertThrows(InvalidMapException.class, () ->
+                    gameService.joinNewGame("sessionId", "gameId", size[0], size[1])
+            );
+            assertTrue(exception.getMessage().contains("out of range"));
+        }
+        assertTrue(gameService.allIds().isEmpty());
+    }
+
     @Test
     public void pauseGameTest() {
         int w = 10, h = 10;
@@ -86,7 +98,10 @@ public class GameServiceTest {
         assertTrue(state1.isPaused());
         assertTrue(capturedState1.isPaused());
 
+        // the pause is only applied by the next tick, which also broadcasts it
         gameService.unpause(playerId);
+        assertTrue(state1.isPaused());
+        gameService.periodicUpdate();
 
         GameState capturedState2 = argumentCaptor.getValue();
         GameState state2 = gameService.idToGame(gameId);
@@ -94,6 +109,7 @@ public class GameServiceTest {
         assertFalse(capturedState2.isPaused());
 
         gameService.pause(playerId);
+        gameService.periodicUpdate();
 
         GameState capturedState3 = argumentCaptor.getValue();
         GameState state3 = gameService.idToGame(gameId);
@@ -111,6 +127,7 @@ public class GameServiceTest {
         PlayerId playerId = gameService.joinNewGame(sessionId, gameId, w, h);
 
         gameService.setName(playerId, name);
+        gameService.periodicUpdate();
         GameState state = gameService.idToGame(gameId);
         assertTrue(state.getSnakeSet().stream().findAny().isPresent());
         Snake snake = state.getSnakeSet().stream().findAny().get();
@@ -128,16 +145,39 @@ public class GameServiceTest {
         PlayerId playerId = gameService.joinNewGame(sessionId, gameId, w, h);
 
         gameService.unpause(playerId);
+        gameService.periodicUpdate();
         GameState state1 = gameService.idToGame(gameId);
         assertFalse(state1.isPaused());
 
         gameService.reset(playerId);
+        gameService.periodicUpdate();
         GameState state2 = gameService.idToGame(gameId);
         assertTrue(state2.isPaused());
 
         Mockito.verify(webSocketServiceMock, times(3)).update(any(GameState.class));
     }
 
+    @Test
+    public void moveTest() {
+        int w = 10, h = 10;
+        String sessionId = "sessionId";
+        String gameId = "gameId";
+
+        PlayerId playerId = gameService.joinNewGame(sessionId, gameId, w, h);
+        GameState state = gameService.idToGame(gameId);
+        Snake snake = state.getSnakeSet().stream().findAny().get();
+        Move initial = snake.getHeadDirection();
+        Move left = initial.rLeft();
+
+        // the input is only applied by the next tick
+        gameService.move(playerId, left);
+        assertEquals(initial, snake.getHeadDirection());
+
+        gameService.unpause(playerId);
+        gameService.periodicUpdate();
+        assertEquals(left, snake.getHeadDirection());
+    }
+
     @Test
     public void addAiTest() {
         int w = 10, h = 10;
@@ -150,8 +190,10 @@ public class GameServiceTest {
         gameService.addAI(playerId, "greedy");
         gameService.addAI(playerId, "ac_100");
         gameService.addAI(playerId, "conv_ac_75000");
+        // the snakes are added by the next tick, which broadcasts them all at once
+        gameService.periodicUpdate();
 
-        Mockito.verify(webSocketServiceMock, times(5)).update(any(GameState.class));
+        Mockito.verify(webSocketServiceMock, times(2)).update(any(GameState.class));
         GameState state2 = gameService.idToGame(gameId);
         assertEquals(state2.getSnakeSet().size(), 5);
     }
@@ -168,9 +210,25 @@ public class GameServiceTest {
         gameService.addAI(playerId, "greedy");
         gameService.addAI(playerId, "ac_100");
         gameService.addAI(playerId, "conv_ac_75000");
+        // the snakes are added by the next tick, which broadcasts them all at once
+        gameService.periodicUpdate();
 
-        Mockito.verify(webSocketServiceMock, times(5)).update(any(GameState.class));
+        Mockito.verify(webSocketServiceMock, times(2)).update(any(GameState.class));
         GameState state2 = gameService.idToGame(gameId);
         assertEquals(state2.getSnakeSet().size(), 5);
     }
+
+    @Test
+    public void gameLoopTest() {
+        String gameId = "gameId";
+        PlayerId playerId = gameService.joinNewGame("sessionId", gameId, 10, 10);
+        gameService.startGameLoop();
+        try {
+            // the join published the first update, the loop ticks the game as soon as it is running
+            gameService.unpause(playerId);
+            Mockito.verify(webSocketServiceMock, Mockito.timeout(3000).atLeast(4)).update(any(GameState.class));
+        } finally {
+            gameService.stopGameLoop();
+        }
+    }
 }
@@ -0,0 +1,89 @@
+package me.schawe.multijsnake.gamemanagement.loop;
+
+import me.schawe.multijsnake.snake.GameState;
+import me.schawe.multijsnake.snake.ai.RandomAutopilot;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/// compares the modes of the `GameLoop` for many small AI games, some of which block during their ticks,
+/// like a game saving a highscore synchronously, not part of the tests, run it with
+/// `java --add-modules jdk.incubator.vector -cp target/classes:target/test-classes:<dependencies> \
+///     me.schawe.multijsnake.gamemanagement.loop.GameLoopBenchmark [games] [periodMS] [blockingMS] [seconds]`
+///
+/// it reports the ticks per second, relative to the ticks which were due, and the distribution of how late the ticks were
+public class GameLoopBenchmark {
+    public static void main(String[] args) throws InterruptedException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        long periodMS = args.length > 1 ? Long.parseLong(args[1]) : 100;
+        long blockingMS = args.length > 2 ? Long.parseLong(args[2]) : 20;
+        long seconds = args.length > 3 ? Long.parseLong(args[3]) : 10;
+
+        for (GameLoop.Mode mode : GameLoop.Mode.values()) {
+            run(mode, games, periodMS, blockingMS, seconds);
+        }
+    }
+
+    private static void run(GameLoop.Mode mode, int games, long periodMS, long blockingMS, long seconds) throws InterruptedException {
+        long periodNanos = periodMS * 1_000_000;
+        Map<String, Long> lastTick = new ConcurrentHashMap<>();
+        // lateness of the ticks in milliseconds, everything above the last bin is in the last bin
+        AtomicLong[] lateness = new AtomicLong[101];
+        Arrays.setAll(lateness, i -> new AtomicLong());
+        AtomicLong ticks = new AtomicLong();
+
+        GameLoop loop = GameLoop.create(mode, 0, periodMS, (gameState, publish) -> {
+            long now = System.nanoTime();
+            Long last = lastTick.put(gameState.getId(), now);
+            if (last != null) {
+                long late = Math.max(0, (now - last - periodNanos) / 1_000_000);
+                lateness[(int) Math.min(late, lateness.length - 1)].incrementAndGet();
+            }
+            gameState.update();
+            ticks.incrementAndGet();
+            // every tenth game blocks, e.g., on the database
+            if (gameState.getId().hashCode() % 10 == 0) {
+                LockSupport.parkNanos(blockingMS * 1_000_000);
+            }
+        });
+        loop.start();
+        for (int i = 0; i < games; ++i) {
+            GameState gameState = new GameState(20, 20, "benchmark-" + i);
+            for (int j = 0; j < 4; ++j) {
+                gameState.addAISnake(new RandomAutopilot());
+            }
+            gameState.setPause(false);
+            loop.add(gameState);
+        }
+
+        Thread.sleep(seconds * 1000);
+        loop.stop();
+
+        long total = ticks.get();
+        long due = games * seconds * 1000 / periodMS;
+        long[] counts = Arrays.stream(lateness).mapToLong(AtomicLong::get).toArray();
+        System.out.printf("%-16s %8.0f ticks/s (%5.1f%% of due), late p50 %3dms, p99 %3dms, max %s%n",
+                mode + (loop instanceof ThreadPerGameLoop t && t.isVirtual() ? " (virtual)" : ""),
+                total / (double) seconds,
+                100. * total / due,
+                percentile(counts, 0.5),
+                percentile(counts, 0.99),
+                counts[counts.length - 1] > 0 ? ">=" + (counts.length - 1) + "ms" : percentile(counts, 1.) + "ms"
+        );
+    }
+
+    private static int percentile(long[] counts, double p) {
+        long total = Arrays.stream(counts).sum();
+        long seen = 0;
+        for (int i = 0; i < counts.length; ++i) {
+            seen += counts[i];
+            if (seen >= p * total) {
+                return i;
+            }
+        }
+        return counts.length - 1;
+    }
+}
@@ -0,0 +1,269 @@
+package me.schawe.multijsnake.gamemanagement.loop;
+
+import me.schawe.multijsnake.snake.Command;
+import me.schawe.multijsnake.snake.GameState;
+import me.schawe.multijsnake.snake.ai.Autopilot;
+import me.schawe.multijsnake.snake.ai.BoringAutopilot;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameLoopTest {
+    private GameLoop loop;
+
+    @AfterEach
+    void tearDown() {
+        if(loop != null) {
+            loop.stop();
+        }
+    }
+
+    private static int ticks(Map<String, AtomicInteger> counter, String id) {
+        return counter.getOrDefault(id, new AtomicInteger()).get();
+    }
+
+    @ParameterizedTest
+    @EnumSource(GameLoop.Mode.class)
+    void ticksEveryGame(GameLoop.Mode mode) throws InterruptedException {
+        Map<String, AtomicInteger> counter = new ConcurrentHashMap<>();
+        loop = GameLoop.create(mode, 2, 10, (game, publish) -> counter.computeIfAbsent(game.getId(), x -> new AtomicInteger()).incrementAndGet());
+        assertThrows(IllegalStateException.class, () -> loop.add(new GameState(10, 10, "early")));
+        loop.start();
+        for(int i = 0; i < 4; ++i) {
+            loop.add(new GameState(10, 10, "game" + i));
+        }
+        assertEquals(4, loop.size());
+
+        Thread.sleep(300);
+        for(int i = 0; i < 4; ++i) {
+            assertTrue(ticks(counter, "game" + i) >= 5, "game" + i + " ticked " + ticks(counter, "game" + i));
+        }
+
+        loop.remove("game0");
+        assertFalse(loop.contains("game0"));
+        int before = ticks(counter, "game0");
+        Thread.sleep(100);
+        // a tick might have been running while removing it
+        assertTrue(ticks(counter, "game0") <= before + 1);
+    }
+
+    // a blocking game delays the other games of its shard, until they are moved by rebalancing
+    @ParameterizedTest
+    @EnumSource(value = GameLoop.Mode.class, mode = EnumSource.Mode.EXCLUDE, names = "SHARDED")
+    void slowGameDoesNotDelayOthers(GameLoop.Mode mode) throws InterruptedException {
+        Map<String, AtomicInteger> counter = new ConcurrentHashMap<>();
+        loop = GameLoop.create(mode, 2, 10, (game, publish) -> {
+            counter.computeIfAbsent(game.getId(), x -> new AtomicInteger()).incrementAndGet();
+            if(game.getId().equals("slow")) {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if(game.getId().equals("broken")) {
+                throw new IllegalStateException("broken tick");
+            }
+        });
+        loop.start();
+        loop.add(new GameState(10, 10, "slow"));
+        loop.add(new GameState(10, 10, "broken"));
+        loop.add(new GameState(10, 10, "fast"));
+
+        Thread.sleep(300);
+        assertEquals(1, ticks(counter, "slow"));
+        // an exception does not cancel the game
+        assertTrue(ticks(counter, "broken") >= 5, "broken ticked " + ticks(counter, "broken"));
+        assertTrue(ticks(counter, "fast") >= 5, "fast ticked " + ticks(counter, "fast"));
+    }
+
+    @ParameterizedTest
+    @EnumSource(GameLoop.Mode.class)
+    void perGamePeriods(GameLoop.Mode mode) throws InterruptedException {
+        Map<String, AtomicInteger> counter = new ConcurrentHashMap<>();
+        loop = GameLoop.create(mode, 2, 100, (game, publish) -> counter.computeIfAbsent(game.getId(), x -> new AtomicInteger()).incrementAndGet());
+        loop.start();
+        loop.add(new GameState(10, 10, "arcade"), 10);
+        loop.add(new GameState(10, 10, "default"));
+        loop.add(new GameState(10, 10, "changed"));
+        loop.setPeriod("changed", 20);
+        assertEquals(10, loop.getPeriod("arcade"));
+        assertEquals(-1, loop.getPeriod("unknown"));
+
+        Thread.sleep(550);
+        int arcade = ticks(counter, "arcade");
+        int normal = ticks(counter, "default");
+        int changed = ticks(counter, "changed");
+        assertTrue(arcade >= 35 && arcade <= 56, "arcade ticked " + arcade);
+        assertTrue(normal >= 3 && normal <= 6, "default ticked " + normal);
+        // the new period applies after the first tick
+        assertTrue(changed >= 15 && changed <= 24, "changed ticked " + changed);
+    }
+
+    @Test
+    void threadPerGame() throws Exception {
+        CompletableFuture<Thread> ticking = new CompletableFuture<>();
+        ThreadPerGameLoop threadLoop = new ThreadPerGameLoop(10, (game, publish) -> ticking.complete(Thread.currentThread()));
+        loop = threadLoop;
+        loop.start();
+        loop.add(new GameState(10, 10, "game"));
+        Thread thread = ticking.get(1, TimeUnit.SECONDS);
+        // without virtual threads (before Java 21), every game has a platform thread
+        assertEquals(ThreadPerGameLoop.virtualThreads("test-") != null, threadLoop.isVirtual());
+        loop.remove("game");
+        assertFalse(loop.contains("game"));
+        thread.join(1000);
+        assertFalse(thread.isAlive());
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // the games of a shard delay each other, which would blur the effects of the policies
+    @ParameterizedTest
+    @EnumSource(value = GameLoop.Mode.class, mode = EnumSource.Mode.EXCLUDE, names = "SHARDED")
+    void overrunPolicies(GameLoop.Mode mode) throws InterruptedException {
+        AtomicInteger published = new AtomicInteger();
+        AtomicInteger unpublished = new AtomicInteger();
+        loop = GameLoop.create(mode, 4, 10, (game, publish) -> {
+            (publish ? published : unpublished).incrementAndGet();
+            game.update();
+            // only the expensive autopilot is slow
+            boolean expensive = game.getSnakeSet().stream().anyMatch(s -> s.ai().filter(a -> a instanceof ExpensiveAutopilot).isPresent());
+            if(expensive || game.getId().equals("slow")) {
+                sleep(25);
+            }
+        });
+        loop.start();
+        loop.add(new GameState(10, 10, "skip"));
+        loop.setOverrunPolicy(OverrunPolicy.SLOW_DOWN);
+        loop.add(new GameState(10, 10, "slow"));
+        GameState degraded = new GameState(10, 10, "degraded");
+        degraded.addAISnake(new ExpensiveAutopilot());
+        loop.add(degraded);
+        loop.setOverrunPolicy("degraded", OverrunPolicy.DEGRADE_AUTOPILOTS);
+        loop.setOverrunPolicy(OverrunPolicy.MERGE_BROADCASTS);
+        GameState merged = new GameState(10, 10, "merged");
+        merged.addAISnake(new ExpensiveAutopilot());
+        loop.add(merged);
+
+        Thread.sleep(500);
+
+        TickStats skip = loop.getStats("skip").orElseThrow();
+        assertEquals(OverrunPolicy.SKIP_FRAMES, skip.policy());
+        assertEquals(0, skip.overruns());
+        assertTrue(skip.ticks() > 20, "skip ticked " + skip.ticks());
+        assertTrue(loop.getStats("unknown").isEmpty());
+
+        // the period doubles until the tick fits in
+        TickStats slow = loop.getStats("slow").orElseThrow();
+        assertTrue(slow.overruns() >= 2, slow.toString());
+        assertTrue(loop.getPeriod("slow") >= 40, "period " + loop.getPeriod("slow"));
+
+        // the autopilot was replaced, so the game is fast again
+        TickStats cheap = loop.getStats("degraded").orElseThrow();
+        assertTrue(cheap.overruns() >= 1, cheap.toString());
+        assertFalse(degraded.getSnakeSet().iterator().next().ai().orElseThrow() instanceof ExpensiveAutopilot);
+        assertTrue(cheap.ticks() > 20, cheap.toString());
+
+        TickStats merging = loop.getStats("merged").orElseThrow();
+        assertTrue(merging.merged() > 0, merging.toString());
+        assertTrue(unpublished.get() > 0);
+        assertTrue(merging.maxNanos() >= merging.meanNanos());
+
+        // snakes which join later are degraded, too, as soon as they slow the game down
+        degraded.submit(new Command.AddAutopilot(new ExpensiveAutopilot()));
+        Thread.sleep(300);
+        assertEquals(2, degraded.getSnakeSet().size());
+        assertTrue(degraded.getSnakeSet().stream().noneMatch(s -> s.ai().orElseThrow() instanceof ExpensiveAutopilot));
+    }
+
+    // pretends to be expensive, and degrades to a cheap autopilot
+    private static class ExpensiveAutopilot extends BoringAutopilot {
+        @Override
+        public Autopilot degraded() {
+            return new BoringAutopilot();
+        }
+    }
+
+    @Test
+    void shardForgetsClosedGames() throws InterruptedException {
+        ShardedGameLoop sharded = new ShardedGameLoop(1, 10000, 0, (game, publish) -> {});
+        loop = sharded;
+        loop.start();
+        loop.add(new GameState(10, 10, "waiting"));
+        loop.add(new GameState(10, 10, "other"));
+        assertEquals(2, sharded.ownedGames(0));
+
+        // the game waits in the wheel for its first tick in ten seconds
+        Thread.sleep(50);
+        loop.remove("waiting");
+        assertFalse(loop.contains("waiting"));
+        assertEquals(1, sharded.ownedGames(0));
+        assertEquals(-1, sharded.shardOf("waiting"));
+    }
+
+    @Test
+    void sharding() throws InterruptedException {
+        // all games on the first of two shards, two of them need 30% of a thread each
+        List<String> ids = IntStream.range(0, 200)
+                .mapToObj(i -> "game" + i)
+                .filter(id -> ShardedGameLoop.shardFor(id, 2) == 0)
+                .limit(4)
+                .toList();
+        Map<String, Thread> threads = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> counter = new ConcurrentHashMap<>();
+        ShardedGameLoop sharded = new ShardedGameLoop(2, 10, 0, (game, publish) -> {
+            counter.computeIfAbsent(game.getId(), x -> new AtomicInteger()).incrementAndGet();
+            threads.put(game.getId(), Thread.currentThread());
+            if(game.getId().equals(ids.get(0)) || game.getId().equals(ids.get(1))) {
+                sleep(3);
+            }
+        });
+        loop = sharded;
+        loop.start();
+        assertEquals(2, sharded.getShards());
+        for(String id : ids) {
+            loop.add(new GameState(10, 10, id));
+        }
+        assertEquals(-1, sharded.shardOf("unknown"));
+
+        Thread.sleep(200);
+        // the shard owns its games, so they all tick on its thread
+        assertEquals(1, ids.stream().map(threads::get).distinct().count());
+        for(String id : ids) {
+            assertEquals(0, sharded.shardOf(id));
+        }
+
+        assertTrue(sharded.rebalance(), "utilization " + sharded.utilization(0) + " " + sharded.utilization(1));
+        assertTrue(sharded.utilization(0) > 0.3, "utilization " + sharded.utilization(0));
+        Thread.sleep(100);
+
+        // moving one of the heavy games balances the shards best, it ticks on the thread of the idle shard from now on
+        List<String> moved = ids.stream().filter(id -> sharded.shardOf(id) == 1).toList();
+        assertEquals(1, moved.size());
+        assertTrue(ids.subList(0, 2).contains(moved.get(0)));
+        assertNotEquals(threads.get(ids.get(2)), threads.get(moved.get(0)));
+        int before = counter.get(moved.get(0)).get();
+        Thread.sleep(200);
+        assertTrue(counter.get(moved.get(0)).get() > before);
+        // balanced now
+        assertFalse(sharded.rebalance(), "utilization " + sharded.utilization(0) + " " + sharded.utilization(1));
+    }
+}
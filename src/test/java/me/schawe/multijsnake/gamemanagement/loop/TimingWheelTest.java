@@ -0,0 +1,66 @@
+package me.schawe.multijsnake.gamemanagement.loop;
+
+import me.schawe.multijsnake.snake.GameState;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+    @Test
+    void expiresAtDeadline() {
+        // 8 buckets of 10 time units, i.e., one rotation takes 80
+        TimingWheel wheel = new TimingWheel(0, 10, 8);
+        ScheduledGame soon = new ScheduledGame(new GameState(10, 10, "soon"), 30, 25);
+        ScheduledGame later = new ScheduledGame(new GameState(10, 10, "later"), 30, 105);
+        ScheduledGame cancelled = new ScheduledGame(new GameState(10, 10, "cancelled"), 30, 25);
+        // 105 and 25 share a bucket, but 105 is one rotation later
+        wheel.schedule(soon);
+        wheel.schedule(later);
+        wheel.schedule(cancelled);
+        cancelled.cancel();
+        assertEquals(3, wheel.size());
+
+        List<ScheduledGame> expired = new ArrayList<>();
+        wheel.advance(29, expired::add);
+        assertTrue(expired.isEmpty());
+        wheel.advance(30, expired::add);
+        assertEquals(List.of(soon), expired);
+        assertEquals(1, wheel.size());
+
+        wheel.advance(100, expired::add);
+        assertEquals(1, expired.size());
+        wheel.advance(110, expired::add);
+        assertEquals(List.of(soon, later), expired);
+        assertEquals(0, wheel.size());
+
+        // deadlines in the past are due in the next slot
+        ScheduledGame late = new ScheduledGame(new GameState(10, 10, "late"), 30, 50);
+        wheel.schedule(late);
+        wheel.advance(120, expired::add);
+        assertEquals(List.of(soon, later, late), expired);
+    }
+
+    @Test
+    void deadlinesDoNotDrift() {
+        ScheduledGame game = new ScheduledGame(new GameState(10, 10, "game"), 100, 100);
+        // the tick ran late, but the next deadline only depends on the previous one
+        assertEquals(0, game.advanceDeadline(170));
+        assertEquals(200, game.getDeadline());
+        // ticks which are completely missed are skipped instead of run in a burst
+        assertEquals(2, game.missedTicks(450));
+        assertEquals(2, game.advanceDeadline(450));
+        assertEquals(500, game.getDeadline());
+        // with a backlog, the next run is due immediately and can catch up with one missed tick
+        assertEquals(2, game.advanceDeadline(920, 2));
+        assertEquals(800, game.getDeadline());
+        assertEquals(1, game.missedTicks(920));
+        game.catchUp(1);
+        assertEquals(900, game.getDeadline());
+        game.setPeriodNanos(50);
+        assertEquals(0, game.advanceDeadline(920));
+        assertEquals(950, game.getDeadline());
+    }
+}
@@ -1,21 +1,28 @@
 package me.schawe.multijsnake.snake;
 
 import me.schawe.multijsnake.gamemanagement.exceptions.InvalidMapException;
+import me.schawe.multijsnake.snake.ai.Autopilot;
 import me.schawe.multijsnake.snake.ai.AutopilotFactory;
 import me.schawe.multijsnake.snake.ai.BoringAutopilot;
 import me.schawe.multijsnake.snake.ai.GreedyAutopilot;
 import me.schawe.multijsnake.snake.ai.RandomAutopilot;
+import me.schawe.multijsnake.snake.ai.TranspositionTable;
 import me.schawe.multijsnake.util.IdGenerator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import com.sun.management.ThreadMXBean;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
+import java.util.function.IntFunction;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 class GameStateTest {
 
@@ -138,6 +145,24 @@ class GameStateTest {
         assertEquals(gameState.getSnakeSet().size(), 1);
     }
 
+    @Test
+    void removedSnakeIsDetached() {
+        SnakeId id = gameState.addSnake();
+        SnakeId other = gameState.addSnake();
+        Snake removed = gameState.getSnake(id);
+        Snake moved = gameState.getSnake(other);
+        gameState.markForRemoval(id);
+        gameState.reset();
+
+        // the other snake moved into the slot of the removed one, the old reference must not see it
+        assertEquals(id, removed.getId());
+        assertThrows(IllegalStateException.class, removed::getHead);
+        assertThrows(IllegalStateException.class, () -> removed.setName("ghost"));
+        assertEquals(other, moved.getId());
+        assertEquals(moved, gameState.getSnake(other));
+        assertNotEquals(removed, moved);
+    }
+
     @Test
     void changeName() {
         SnakeId id = gameState.addSnake();
@@ -282,6 +307,262 @@ class GameStateTest {
         assertTrue(other.isDead());
     }
 
+    @Test
+    void dieHeadOn() {
+        SnakeId id = gameState.addSnake(new Coordinate(10, 5), Move.right);
+        SnakeId otherId = gameState.addSnake(new Coordinate(12, 5), Move.left);
+        gameState.setPause(false);
+        Snake snake = gameState.getSnake(id);
+        Snake other = gameState.getSnake(otherId);
+
+        gameState.update();
+        assertEquals(snake.getHead(), other.getHead(), "head on collision");
+        assertTrue(snake.isDead());
+        assertTrue(other.isDead());
+        assertTrue(gameState.isOccupied(new Coordinate(11, 5)));
+    }
+
+    @Test
+    void dieOnOtherNeck() {
+        // the other snake leaves the site, but its tail stays there
+        SnakeId id = gameState.addSnake(new Coordinate(10, 5), Move.right);
+        SnakeId otherId = gameState.addSnake(new Coordinate(11, 5), Move.up);
+        gameState.setPause(false);
+
+        gameState.update();
+        assertTrue(gameState.getSnake(id).isDead());
+        assertFalse(gameState.getSnake(otherId).isDead());
+    }
+
+    @Test
+    void remainingTurns() {
+        SnakeId id = gameState.addSnake(new Coordinate(10, 5), Move.right);
+        gameState.setPause(false);
+        gameState.addFood(new Coordinate(30, 20));
+        OccupancyView occupancy = gameState.occupancy();
+
+        assertEquals(3, occupancy.remainingTurns(10, 5));
+        gameState.update();
+        gameState.update();
+        gameState.update();
+        assertEquals(3, occupancy.remainingTurns(13, 5), "head");
+        assertEquals(2, occupancy.remainingTurns(12, 5), "neck");
+        assertEquals(1, occupancy.remainingTurns(11, 5), "tail end");
+        assertEquals(0, occupancy.remainingTurns(10, 5), "free");
+        assertFalse(occupancy.isOccupied(10, 5));
+
+        int[][][] bitmap = new TrainingState(gameState).bitmap(id);
+        assertEquals(0, bitmap[13][5][2], "own head");
+        assertEquals(2, bitmap[12][5][2]);
+        assertEquals(1, bitmap[11][5][2]);
+
+        // dead snakes stay on the field
+        gameState.kill(id);
+        gameState.update();
+        assertEquals(1, occupancy.remainingTurns(11, 5));
+        assertTrue(occupancy.isOccupied(11, 5));
+    }
+
+    @Test
+    void followTail() {
+        // the snake runs in a tight circle and always steps onto the site its tail end just left
+        SnakeId id = gameState.addSnake(new Coordinate(10, 5), Move.right);
+        gameState.setPause(false);
+        Snake snake = gameState.getSnake(id);
+        snake.incrementLength();
+        gameState.addFood(new Coordinate(30, 20));
+
+        Move[] circle = {Move.right, Move.down, Move.left, Move.up};
+        for(int i=0; i<12; ++i) {
+            gameState.turn(id, circle[i % 4]);
+            gameState.update();
+            assertFalse(snake.isDead());
+        }
+        assertTrue(gameState.isOccupied(new Coordinate(10, 5)));
+        assertTrue(gameState.isOccupied(new Coordinate(11, 5)));
+        assertTrue(gameState.isOccupied(new Coordinate(11, 6)));
+        assertTrue(gameState.isOccupied(new Coordinate(10, 6)));
+        assertFalse(gameState.isOccupied(new Coordinate(12, 5)));
+    }
+
+    @Test
+    void followOtherTail() {
+        // the snake moves before the other one, but must still be able to enter the site its tail end leaves
+        SnakeId id = gameState.addSnake(new Coordinate(9, 5), Move.right);
+        SnakeId otherId = gameState.addSnake(new Coordinate(12, 5), Move.up);
+        gameState.addFood(new Coordinate(30, 20));
+        gameState.setPause(false);
+
+        for(int i=0; i<3; ++i) {
+            gameState.update();
+        }
+        assertEquals(new Coordinate(12, 5), gameState.getSnake(id).getHead());
+        assertFalse(gameState.getSnake(id).isDead());
+        assertFalse(gameState.getSnake(otherId).isDead());
+    }
+
+    @Test
+    void tickDoesNotAllocate() {
+        ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        long thread = Thread.currentThread().getId();
+
+        // two human snakes running in tight circles, they never die and never eat
+        SnakeId id = gameState.addSnake(new Coordinate(10, 5), Move.right);
+        SnakeId otherId = gameState.addSnake(new Coordinate(20, 5), Move.right);
+        gameState.getSnake(id).incrementLength();
+        gameState.getSnake(otherId).incrementLength();
+        gameState.addFood(new Coordinate(30, 20));
+        gameState.setPause(false);
+
+        // publishing the snapshot for the clients allocates, a fork does not publish, but ticks the same way
+        GameState game = gameState.fork();
+        Move[] circle = {Move.right, Move.down, Move.left, Move.up};
+        Command[][] turns = new Command[4][];
+        for(int i=0; i<4; ++i) {
+            turns[i] = new Command[] {new Command.Turn(id, circle[i]), new Command.Turn(otherId, circle[i])};
+        }
+        long allocated = 0;
+        for(int i=0; i<50000; ++i) {
+            // queueing allocates a node, but applying the commands within the tick does not
+            game.submit(turns[i % 4][0]);
+            game.submit(turns[i % 4][1]);
+            long before = threadBean.getThreadAllocatedBytes(thread);
+            game.update();
+            long after = threadBean.getThreadAllocatedBytes(thread);
+            // only measure after the warmup, when the tick is compiled
+            if(i >= 40000) {
+                allocated += after - before;
+            }
+        }
+
+        assertFalse(game.isGameOver());
+        assertFalse(game.isPaused());
+        // a single allocating tick costs at least 16 bytes, a few bytes of noise from the JVM are fine
+        assertTrue(allocated < 10000, allocated + " bytes allocated by 10000 ticks");
+    }
+
+    @Test
+    void snapshot() {
+        SnakeId id = gameState.addSnake(new Coordinate(10, 5), Move.right);
+        gameState.addFood(new Coordinate(30, 20));
+        GameSnapshot before = gameState.snapshot();
+        assertTrue(before.paused());
+        assertEquals(new Coordinate(10, 5), before.snakes().get(id.getIdx()).head());
+
+        // changes only become visible with the snapshot of the tick which applies them
+        gameState.submit(new Command.Pause(false));
+        gameState.submit(new Command.Rename(id, "Test1"));
+        assertSame(before, gameState.snapshot());
+
+        gameState.update();
+        GameSnapshot after = gameState.snapshot();
+        assertFalse(after.paused());
+        assertEquals("Test1", after.snakes().get(id.getIdx()).name());
+        assertEquals(1, after.tick());
+        assertEquals(new Coordinate(11, 5), after.snakes().get(id.getIdx()).head());
+        assertThat(after.snakes().get(id.getIdx()).tail(), contains(new Coordinate(10, 5)));
+        assertEquals(new Coordinate(30, 20), after.food());
+
+        // earlier snapshots are not touched by later ticks
+        assertEquals(new Coordinate(10, 5), before.snakes().get(id.getIdx()).head());
+        assertTrue(before.snakes().get(id.getIdx()).tail().isEmpty());
+        assertThrows(UnsupportedOperationException.class, () -> after.snakes().clear());
+    }
+
+    @Test
+    void freeSites() {
+        // small fields use the bitboard, wide fields the plain grid
+        freeSitesStayConsistent(8, 8);
+        freeSitesStayConsistent(70, 4);
+    }
+
+    void freeSitesStayConsistent(int width, int height) {
+        gameState = new GameState(width, height, 42);
+        for(int i=0; i<3; ++i) {
+            gameState.addAISnake(new GreedyAutopilot());
+        }
+        gameState.addAISnake(new RandomAutopilot());
+        gameState.setPause(false);
+        OccupancyView occupancy = gameState.occupancy();
+
+        for(int t=0; t<200; ++t) {
+            if(gameState.isGameOver()) {
+                gameState.reset();
+                gameState.setPause(false);
+            }
+            gameState.update();
+
+            int free = 0;
+            for(int x=0; x<width; ++x) {
+                for(int y=0; y<height; ++y) {
+                    if(!occupancy.isOccupied(x, y)) {
+                        free += 1;
+                    }
+                    assertEquals(occupancy.isOccupied(x, y), occupancy.remainingTurns(x, y) > 0);
+                }
+            }
+            assertEquals(free, occupancy.freeSites(), "tick " + t);
+
+            for(Snake snake : gameState.getSnakeSet()) {
+                int x = snake.getHead().getX();
+                int y = snake.getHead().getY();
+                assertEquals(OccupancyGrid.floodFill(occupancy, x, y), occupancy.reachableFreeSites(x, y), "tick " + t);
+            }
+        }
+    }
+
+    @Test
+    void chunkedFloodFill() {
+        // a wall splits the field into a small and a large region, which spans several chunks
+        ChunkedBoard board = new ChunkedBoard(200, 150);
+        for(int y=0; y<150; ++y) {
+            board.occupy(20, y, 1000);
+        }
+        board.occupy(100, 100, 1000);
+        for(int[] start : new int[][] {{0, 0}, {150, 20}, {20, 5}, {100, 100}, {-1, 3}}) {
+            // repeatedly, such that stale visited sites of earlier fills would show up
+            for(int i=0; i<3; ++i) {
+                assertEquals(OccupancyGrid.floodFill(board, start[0], start[1]), board.reachableFreeSites(start[0], start[1]));
+            }
+        }
+    }
+
+    @Test
+    void hugeArena() {
+        gameState = new GameState(10000, 10000, 42);
+        assertInstanceOf(ChunkedBoard.class, gameState.board());
+        ChunkedBoard occupancy = (ChunkedBoard) gameState.board();
+        // the board is only handed out read-only
+        assertFalse(gameState.occupancy() instanceof Board);
+        for(int i=0; i<4; ++i) {
+            gameState.addAISnake(new GreedyAutopilot());
+        }
+        gameState.setPause(false);
+
+        for(int t=0; t<200; ++t) {
+            gameState.update();
+        }
+
+        int occupied = 0;
+        for(Snake snake : gameState.getSnakeSet()) {
+            assertFalse(snake.isDead());
+            assertTrue(occupancy.isOccupied(snake.getHead().getX(), snake.getHead().getY()));
+            for(Coordinate site : snake.getTail()) {
+                assertTrue(occupancy.isOccupied(site.getX(), site.getY()));
+            }
+            occupied += snake.getTail().size() + 1;
+        }
+        assertEquals(10000 * 10000 - occupied, occupancy.freeSites());
+        // the snakes left their starting chunks, only the chunks they occupy now stay allocated
+        assertTrue(occupancy.allocatedChunks() <= 8, occupancy.allocatedChunks() + " chunks");
+        assertEquals(ChunkedBoard.FLOOD_FILL_LIMIT, occupancy.reachableFreeSites(0, 0));
+
+        gameState.reset();
+        assertEquals(4, occupancy.allocatedChunks());
+    }
+
     @Test
     void addAi() {
         SnakeId id1 = gameState.addAISnake(new RandomAutopilot());
@@ -463,4 +744,484 @@ class GameStateTest {
         gameState.turn(id, Move.right);
         assertEquals(snake.getHeadDirection(), Move.up);
     }
-}
\ No newline at end of file
+
+    @Test
+    void fork() {
+        SnakeId id1 = gameState.addSnake(new Coordinate(3, 3), Move.right);
+        SnakeId id2 = gameState.addSnake(new Coordinate(10, 10), Move.down, new BoringAutopilot());
+        gameState.setPause(false);
+        for(int i = 0; i < 20; ++i) {
+            gameState.update();
+        }
+
+        GameState fork = gameState.fork();
+        for(int i = 0; i < 50; ++i) {
+            gameState.update();
+            fork.update();
+            assertEquals(gameState.getFood(), fork.getFood());
+            for(SnakeId id : List.of(id1, id2)) {
+                assertEquals(gameState.getSnake(id).getHead(), fork.getSnake(id).getHead());
+                assertEquals(gameState.getSnake(id).getTail(), fork.getSnake(id).getTail());
+                assertEquals(gameState.getSnake(id).isDead(), fork.getSnake(id).isDead());
+            }
+        }
+        assertEquals(gameState.getScore(), fork.getScore());
+
+        // changes of the fork do not leak into the original
+        gameState.reset();
+        gameState.setPause(false);
+        GameState other = gameState.fork();
+        Coordinate head = gameState.getSnake(id2).getHead();
+        Move direction = gameState.getSnake(id2).getHeadDirection();
+        int turns = gameState.occupancy().remainingTurns(head.getX(), head.getY());
+        other.kill(id1);
+        other.turn(id2, Move.left);
+        other.update();
+        assertTrue(other.getSnake(id1).isDead());
+        assertFalse(gameState.getSnake(id1).isDead());
+        assertEquals(head, gameState.getSnake(id2).getHead());
+        assertEquals(direction, gameState.getSnake(id2).getHeadDirection());
+        assertEquals(turns, gameState.occupancy().remainingTurns(head.getX(), head.getY()));
+    }
+
+    private static String describe(SearchState search) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(search.food()).append(' ').append(search.score()).append(' ').append(search.alive()).append('\n');
+        for(int i = 0; i < search.numSnakes(); ++i) {
+            sb.append(search.head(i)).append(' ').append(search.direction(i)).append(' ')
+                    .append(search.length(i)).append(' ').append(search.isDead(i)).append(':');
+            for(int k = 0; k < search.tailSize(i); ++k) {
+                sb.append(' ').append(search.tailSite(i, k));
+            }
+            sb.append('\n');
+        }
+        for(int y = 0; y < search.getHeight(); ++y) {
+            for(int x = 0; x < search.getWidth(); ++x) {
+                sb.append(search.isOccupied(x, y) ? '#' : '.');
+            }
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void makeUnmake() {
+        gameState.addSnake(new Coordinate(5, 5), Move.right);
+        gameState.addSnake(new Coordinate(20, 10), Move.down);
+        gameState.addSnake(new Coordinate(30, 12), Move.left);
+        gameState.setPause(false);
+        for(int i = 0; i < 5; ++i) {
+            gameState.update();
+        }
+
+        // one step of the search follows the rules of the game
+        gameState.addFood(new Coordinate(11, 5));
+        SearchState search = gameState.searchState();
+        search.make(new Move[3]);
+        gameState.update();
+        for(int i = 0; i < 3; ++i) {
+            Snake snake = gameState.getSnake(search.id(i));
+            assertEquals(snake.headSite(), search.head(i));
+            assertEquals(snake.getLength(), search.length(i));
+            assertEquals(snake.isDead(), search.isDead(i));
+            assertEquals(snake.tailSites().size(), search.tailSize(i));
+        }
+        assertEquals(gameState.getScore(), search.score());
+        for(int y = 0; y < gameState.getHeight(); ++y) {
+            for(int x = 0; x < gameState.getWidth(); ++x) {
+                assertEquals(gameState.isOccupied(x, y), search.isOccupied(x, y));
+            }
+        }
+
+        // random walks are taken back exactly, including the food drawn on the way
+        Random random = new Random(7);
+        List<String> history = new ArrayList<>();
+        Move[] moves = new Move[3];
+        for(int d = 0; d < 60; ++d) {
+            history.add(describe(search));
+            for(int i = 0; i < 3; ++i) {
+                moves[i] = Move.random(random);
+            }
+            search.make(moves);
+        }
+        String deepest = describe(search);
+        for(int d = 59; d >= 0; --d) {
+            search.unmake();
+            assertEquals(history.get(d), describe(search));
+        }
+        assertEquals(1, search.depth());
+
+        // the same moves lead to the same state again
+        random = new Random(7);
+        for(int d = 0; d < 60; ++d) {
+            for(int i = 0; i < 3; ++i) {
+                moves[i] = Move.random(random);
+            }
+            search.make(moves);
+        }
+        assertEquals(deepest, describe(search));
+
+        while(search.depth() > 0) {
+            search.unmake();
+        }
+        assertEquals(gameState.getSnakeSet().size(), search.alive());
+        assertThrows(IllegalStateException.class, search::unmake);
+    }
+
+    @Test
+    void hash() {
+        SnakeId id1 = gameState.addSnake(new Coordinate(5, 5), Move.right);
+        gameState.addSnake(new Coordinate(20, 10), Move.down);
+        gameState.setPause(false);
+        for(int i = 0; i < 5; ++i) {
+            gameState.update();
+        }
+
+        // the incremental hash agrees with the one of a search, which computes the tails from scratch
+        gameState.addFood(new Coordinate(0, 22));
+        SearchState search = gameState.searchState();
+        long before = gameState.hash();
+        assertEquals(before, search.hash());
+        gameState.update();
+        search.make(new Move[2]);
+        assertEquals(gameState.hash(), search.hash());
+        assertEquals(gameState.hash(), gameState.searchState().hash());
+        assertNotEquals(before, gameState.hash());
+        search.unmake();
+        assertEquals(before, search.hash());
+
+        // same position in a different game and at a different tick, same hash
+        GameState other = new GameState(42, 23, 7);
+        other.addSnake(new Coordinate(1, 5), Move.right);
+        other.addSnake(new Coordinate(20, 6), Move.down);
+        other.setPause(false);
+        for(int i = 0; i < 10; ++i) {
+            other.update();
+        }
+        other.addFood(new Coordinate(0, 22));
+        assertEquals(gameState.hash(), other.hash());
+
+        gameState.turn(id1, Move.up);
+        assertNotEquals(other.hash(), gameState.hash());
+
+        TranspositionTable table = new TranspositionTable(1000);
+        assertEquals(512, table.capacity());
+        assertEquals(TranspositionTable.MISS, table.probe(0));
+        table.store(other.hash(), 42);
+        assertEquals(42, table.probe(other.hash()));
+        assertEquals(TranspositionTable.MISS, table.probe(gameState.hash()));
+        table.clear();
+        assertEquals(TranspositionTable.MISS, table.probe(other.hash()));
+    }
+
+    @Test
+    void topology() {
+        Topology topology = gameState.topology();
+        assertSame(topology, Topology.of(42, 23));
+        assertSame(topology, new GameState(42, 23, 7).topology());
+
+        for(int y = -1; y <= 23; ++y) {
+            for(int x = -1; x <= 42; ++x) {
+                int idx = topology.index(x, y);
+                assertEquals(gameState.isWall(x, y), idx == Topology.WALL);
+                for(Move move : Move.values()) {
+                    int next = topology.neighbor(idx, move);
+                    if(idx == Topology.WALL) {
+                        assertEquals(Topology.WALL, next);
+                    } else {
+                        assertEquals(topology.index(x + move.dx(), y + move.dy()), next);
+                    }
+                    assertEquals(move.rLeft(), MoveRelative.left.toMove(move));
+                    assertEquals(move, move.rLeft().rRight());
+                    assertEquals(move, move.back().back());
+                    assertTrue(move.isOpposite(move.back()));
+                }
+            }
+        }
+        assertEquals(Move.left, Move.up.rLeft());
+        assertEquals(Move.down, Move.right.rRight());
+
+        // huge fields compute their neighbors on the fly
+        Topology huge = Topology.of(10000, 10000);
+        assertEquals(huge.index(5, 4), huge.neighbor(huge.index(5, 5), Move.up));
+        assertEquals(huge.index(1, 0), huge.neighbor(huge.index(0, 0), Move.up, MoveRelative.right));
+        assertEquals(Topology.WALL, huge.neighbor(huge.index(9999, 0), Move.right));
+    }
+
+    @Test
+    void fieldKernels() {
+        // the build adds the module, so the tests cover both implementations
+        FieldKernels vector = FieldKernels.get();
+        FieldKernels scalar = FieldKernels.scalar();
+        assertTrue(vector.isVectorized());
+        assertFalse(scalar.isVectorized());
+
+        Random random = new Random(42);
+        for(int width : new int[] {1, 7, 63, 64}) {
+            int height = 37;
+            long[] occupied = new long[height];
+            for(int y = 0; y < height; ++y) {
+                for(int x = 0; x < width; ++x) {
+                    if(random.nextInt(3) == 0) {
+                        occupied[y] |= 1L << x;
+                    }
+                }
+            }
+            long fieldMask = width == 64 ? -1L : (1L << width) - 1;
+            BitBoard board = new BitBoard(width, height);
+            for(int y = 0; y < height; ++y) {
+                for(int x = 0; x < width; ++x) {
+                    if((occupied[y] & (1L << x)) != 0) {
+                        board.occupy(x, y, 1);
+                    }
+                }
+            }
+
+            int[] heads = new int[height + 3];
+            for(int i = 0; i < height; ++i) {
+                heads[i] = Coordinate.pack(random.nextInt(width), i);
+                int x = Coordinate.x(heads[i]);
+                assertEquals(OccupancyGrid.floodFill(board, x, i), vector.reachableFreeSites(occupied, fieldMask, x, i));
+                assertEquals(OccupancyGrid.floodFill(board, x, i), scalar.reachableFreeSites(occupied, fieldMask, x, i));
+            }
+            // heads of crashed snakes
+            heads[height] = Coordinate.pack(-1, 0);
+            heads[height + 1] = Coordinate.pack(width, height - 1);
+            heads[height + 2] = Coordinate.pack(0, height);
+            int[] expected = new int[heads.length];
+            int[] actual = new int[heads.length];
+            scalar.blockedNeighbors(occupied, width, heads, heads.length, expected);
+            vector.blockedNeighbors(occupied, width, heads, heads.length, actual);
+            assertArrayEquals(expected, actual);
+            for(int i = 0; i < heads.length; ++i) {
+                for(Move move : Move.values()) {
+                    int next = Coordinate.neighbor(heads[i], move);
+                    boolean blocked = (expected[i] & FieldKernels.blockedBit(move)) != 0;
+                    assertEquals(board.isBlocked(Coordinate.x(next), Coordinate.y(next)), blocked);
+                }
+            }
+        }
+
+        int[] expiry = new int[1001];
+        for(int i = 0; i < expiry.length; ++i) {
+            expiry[i] = random.nextInt(200) - 50;
+        }
+        int[] expected = new int[expiry.length];
+        int[] actual = new int[expiry.length];
+        scalar.remainingTurns(expiry, 100, expected);
+        vector.remainingTurns(expiry, 100, actual);
+        assertArrayEquals(expected, actual);
+
+        // the features of the game use the kernels
+        SnakeId id1 = gameState.addSnake(new Coordinate(0, 3), Move.up);
+        SnakeId id2 = gameState.addSnake(new Coordinate(10, 10), Move.right);
+        int[] masks = new TrainingState(gameState).dangerMasks(List.of(id1, id2));
+        assertEquals(FieldKernels.blockedBit(Move.left), masks[0]);
+        assertEquals(0, masks[1]);
+        gameState.setPause(false);
+        gameState.update();
+        int[][][] bitmap = new TrainingState(gameState).bitmap(id1);
+        assertEquals(2, bitmap[0][3][2]);
+        assertEquals(0, bitmap[0][2][2]);
+        assertEquals(1, bitmap[0][2][1]);
+    }
+
+    // pretends to be expensive and steers differently after it was degraded
+    private static class DegradingAutopilot extends BoringAutopilot {
+        @Override
+        public Autopilot degraded() {
+            return new GreedyAutopilot();
+        }
+    }
+
+    private static GameState recordedGame(GameState game, InputLog[] log) {
+        log[0] = game.recordInputs();
+        SnakeId human = game.addSnake();
+        game.addSnake(new Coordinate(3, 3), Move.right);
+        game.addAISnake(new RandomAutopilot());
+        game.addAISnake(new GreedyAutopilot());
+        game.addSnake(new Coordinate(30, 20), Move.left, new DegradingAutopilot());
+        game.addFood(new Coordinate(20, 20));
+        game.setPause(false);
+        Random inputs = new Random(3);
+        for(int t = 0; t < 300; ++t) {
+            if(inputs.nextInt(4) == 0) {
+                game.submit(new Command.Turn(human, Move.random(inputs)));
+            }
+            if(t == 100) {
+                game.setPause(true);
+            }
+            if(t == 110) {
+                game.setPause(false);
+            }
+            // what the game loop does if a tick overruns with `OverrunPolicy.DEGRADE_AUTOPILOTS`
+            if(t == 200) {
+                game.submit(new Command.DegradeAutopilots());
+            }
+            if(t == 150 || game.isGameOver()) {
+                game.markForRemoval(new SnakeId(game.getId(), 1));
+                game.reset();
+                game.setPause(false);
+            }
+            game.update();
+        }
+        return game;
+    }
+
+    @Test
+    void replay() {
+        InputLog[] log = new InputLog[1];
+        GameState original = recordedGame(new GameState(42, 23, "replay"), log);
+        // all ticks between two inputs are merged into one entry
+        assertTrue(log[0].size() < 300, "size " + log[0].size());
+
+        IntFunction<Autopilot> autopilots = idx -> switch (idx) {
+            case 2 -> new RandomAutopilot();
+            case 3 -> new GreedyAutopilot();
+            case 4 -> new DegradingAutopilot();
+            default -> throw new IllegalArgumentException("snake " + idx + " had no autopilot");
+        };
+        GameState replayed = InputLog.of(log[0].toArray()).replay(new GameState(42, 23, "replay"), autopilots);
+
+        assertEquals(original.hash(), replayed.hash());
+        assertEquals(original.getFood(), replayed.getFood());
+        assertEquals(original.getScore(), replayed.getScore());
+        assertEquals(original.snapshot().tick(), replayed.snapshot().tick());
+        for(Snake snake : original.getSnakeSet()) {
+            Snake other = replayed.getSnake(snake.getId());
+            assertEquals(snake.getHead(), other.getHead());
+            assertEquals(snake.getTail(), other.getTail());
+            assertEquals(snake.isDead(), other.isDead());
+        }
+
+        // the degraded autopilot was replayed, too
+        Snake degraded = replayed.getSnake(new SnakeId(replayed.getId(), 4));
+        assertInstanceOf(GreedyAutopilot.class, degraded.ai().orElseThrow());
+
+        // a seeded game is reproducible by itself
+        GameState again = recordedGame(new GameState(42, 23, "replay"), log);
+        assertEquals(original.hash(), again.hash());
+    }
+
+    // many random snakes on a small field, such that they crash into each other
+    private static List<SnakeId> crowdedDeaths(long[] hash) {
+        GameState game = new GameState(80, 80, 7L);
+        List<SnakeId> deaths = new ArrayList<>();
+        game.setSnakeDiesCallback(snake -> deaths.add(snake.getId()));
+        for(int i = 0; i < 1000; ++i) {
+            game.addAISnake(new RandomAutopilot());
+        }
+        game.setPause(false);
+        for(int t = 0; t < 20 && !game.isGameOver(); ++t) {
+            game.update();
+        }
+        hash[0] = game.hash();
+        return deaths;
+    }
+
+    @Test
+    void parallelCollisions() {
+        int threshold = Collisions.getParallelThreshold();
+        try {
+            long[] sequentialHash = new long[1];
+            long[] parallelHash = new long[1];
+            Collisions.setParallelThreshold(Integer.MAX_VALUE);
+            List<SnakeId> sequential = crowdedDeaths(sequentialHash);
+            Collisions.setParallelThreshold(0);
+            List<SnakeId> parallel = crowdedDeaths(parallelHash);
+
+            assertTrue(sequential.size() > 100, sequential.size() + " snakes died");
+            assertEquals(sequential, parallel);
+            assertEquals(sequentialHash[0], parallelHash[0]);
+        } finally {
+            Collisions.setParallelThreshold(threshold);
+        }
+    }
+
+    @Test
+    void headToHead() {
+        SnakeId a = gameState.addSnake(new Coordinate(10, 5), Move.right);
+        SnakeId b = gameState.addSnake(new Coordinate(12, 5), Move.left);
+        SnakeId c = gameState.addSnake(new Coordinate(11, 7), Move.right);
+        gameState.addFood(new Coordinate(30, 20));
+        gameState.setPause(false);
+        gameState.update();
+
+        assertTrue(gameState.getSnake(a).isDead());
+        assertTrue(gameState.getSnake(b).isDead());
+        assertFalse(gameState.getSnake(c).isDead());
+    }
+
+    private static long botGame(boolean parallel) {
+        GameState game = new GameState(30, 30, 11L);
+        game.setParallelAutopilots(parallel);
+        for(int i = 0; i < 8; ++i) {
+            game.addAISnake(i % 2 == 0 ? new GreedyAutopilot() : new RandomAutopilot());
+        }
+        game.addSnake(new Coordinate(2, 2), Move.right, new BoringAutopilot());
+        game.setPause(false);
+        for(int t = 0; t < 200 && !game.isGameOver(); ++t) {
+            game.update();
+        }
+        return game.hash();
+    }
+
+    @Test
+    void parallelAutopilots() {
+        // the autopilots see the same state and draw from the same streams, regardless of the mode
+        assertEquals(botGame(false), botGame(true));
+    }
+
+    private static long failingAutopilotGame(boolean parallel) {
+        GameState game = new GameState(30, 30, 11L);
+        game.setParallelAutopilots(parallel);
+        List<Snake> died = new ArrayList<>();
+        game.setSnakeDiesCallback(died::add);
+        SnakeId boring = game.addSnake(new Coordinate(2, 2), Move.right, new BoringAutopilot());
+        // like a deep autopilot whose model failed to load
+        SnakeId failing = game.addSnake(new Coordinate(15, 15), Move.right, new BoringAutopilot() {
+            @Override
+            public Move suggest(GameState gameState, Snake snake) {
+                throw new RuntimeException("failed to load model");
+            }
+        });
+        game.setPause(false);
+        for(int t = 0; t < 20; ++t) {
+            game.update();
+        }
+
+        // the failing snake died in its first tick without moving, the game went on
+        assertEquals(1, died.size());
+        assertTrue(game.getSnake(failing).isDead());
+        assertEquals(new Coordinate(15, 15), game.getSnake(failing).getHead());
+        assertFalse(game.getSnake(boring).isDead());
+        return game.hash();
+    }
+
+    @Test
+    void failingAutopilot() {
+        assertEquals(failingAutopilotGame(false), failingAutopilotGame(true));
+    }
+
+    @Test
+    void parallelAutopilotsCannotWrite() {
+        GameState game = new GameState(30, 30, 11L);
+        game.setParallelAutopilots(true);
+        // an autopilot which writes to the game it is shown
+        SnakeId id = game.addSnake(new Coordinate(15, 15), Move.right, new BoringAutopilot() {
+            @Override
+            public Move suggest(GameState gameState, Snake snake) {
+                gameState.kill(snake.getId());
+                return Move.down;
+            }
+        });
+        game.setPause(false);
+        game.update();
+
+        // the frozen copy shares the board read-only, so neither the snake nor the board of the game changed
+        Snake snake = game.getSnake(id);
+        assertFalse(snake.isDead());
+        assertEquals(new Coordinate(15, 16), snake.getHead());
+        assertTrue(game.occupancy().isOccupied(15, 16));
+        assertEquals(30 * 30 - 2, game.occupancy().freeSites());
+    }
+}
@@ -3,6 +3,8 @@ package me.schawe.multijsnake.snake;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.Random;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class SnakeTest {
@@ -89,6 +91,73 @@ class SnakeTest {
         assertEquals(snake.getHeadDirection(), Move.up);
     }
 
+    @Test
+    void tail() {
+        snake.turnAbsolute(Move.right);
+        for(int i=0; i<40; ++i) {
+            snake.incrementLength();
+        }
+        // wrap around the ring buffer a few times
+        for(int i=0; i<100; ++i) {
+            snake.step();
+        }
+
+        assertEquals(new Coordinate(101, 1), snake.getHead());
+        assertEquals(42, snake.getTail().size());
+        assertEquals(new Coordinate(59, 1), snake.getTail().get(0), "end of the tail");
+        assertEquals(new Coordinate(100, 1), snake.getTail().get(41), "neck");
+        assertEquals(Coordinate.pack(100, 1), snake.tailSites().get(41));
+
+        snake.reset(new Coordinate(-1, 3));
+        assertEquals(0, snake.getTail().size());
+        assertEquals(new Coordinate(-1, 3), snake.getHead());
+    }
+
+    @Test
+    void store() {
+        SnakeStore store = new SnakeStore(1);
+        Snake[] snakes = new Snake[3];
+        for(int i=0; i<3; ++i) {
+            snakes[i] = new Snake(store, new SnakeId("store", i), new Coordinate(0, i), Move.right, null, new Random(i));
+            // grow beyond the initial region of the tail
+            for(int j=0; j<10*i; ++j) {
+                snakes[i].incrementLength();
+            }
+        }
+        for(int t=0; t<40; ++t) {
+            for(Snake s : snakes) {
+                s.step();
+            }
+        }
+
+        assertEquals(2 + 12 + 22 + 3, store.occupiedSites());
+        assertEquals(3, store.alive());
+        assertEquals(3, store.humans());
+
+        store.remove(snakes[1].slot());
+        assertEquals(2, store.size());
+        assertEquals(2 + 22 + 2, store.occupiedSites());
+        assertEquals(2, store.alive());
+        assertEquals(2, store.humans());
+        assertEquals(1, snakes[2].slot());
+        assertEquals(new SnakeId("store", 2), snakes[2].getId());
+        assertEquals(new Coordinate(40, 2), snakes[2].getHead());
+        assertEquals(22, snakes[2].getTail().size());
+
+        store.compact();
+        assertEquals(new Coordinate(18, 2), snakes[2].getTail().get(0), "end of the tail");
+        assertEquals(new Coordinate(39, 2), snakes[2].getTail().get(21), "neck");
+        assertEquals(new Coordinate(38, 0), snakes[0].getTail().get(0));
+        assertEquals(2, snakes[0].getTail().size());
+
+        snakes[0].kill();
+        snakes[0].kill();
+        assertEquals(1, store.alive());
+        snakes[0].reset(new Coordinate(5, 5));
+        assertEquals(2, store.alive());
+        assertEquals(2 + 22 + 2, store.occupiedSites());
+    }
+
     @Test
     void constructorTest() {
         SnakeId id = new SnakeId("id", 0);